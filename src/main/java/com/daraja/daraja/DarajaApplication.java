@@ -25,9 +25,24 @@ SOFTWARE.
 
 package com.daraja.daraja;
 
+import com.daraja.daraja.common.ValidationEngine;
 import com.daraja.daraja.service.ApiHandler;
+import com.daraja.daraja.service.BatchHandler;
+import com.daraja.daraja.service.DatabaseService;
+import com.daraja.daraja.service.MetricsHandler;
+import com.daraja.daraja.service.MicroBatcher;
+import com.daraja.daraja.service.RateLimiter;
+import com.daraja.daraja.service.RequestExecutor;
+import com.daraja.daraja.service.ResponseCache;
+import com.daraja.daraja.service.RouteRegistry;
+import com.daraja.daraja.service.UserStatusCache;
+import com.daraja.daraja.utility.BufferedResponse;
+import com.daraja.daraja.utility.ErrorHandlingUtility;
+import com.daraja.daraja.utility.RequestBodyBinder;
 import org.springframework.boot.SpringApplication;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.Bean;
 
@@ -38,10 +53,67 @@ public class DarajaApplication {
         SpringApplication.run(DarajaApplication.class, args);
     }
 
+    // Error messages are cached in memory and refreshed together with the route table
+    @Bean
+    public ErrorHandlingUtility errorHandlingUtility(DatabaseService databaseService, RouteRegistry routeRegistry) {
+        ErrorHandlingUtility errorUtil = ErrorHandlingUtility.getInstance();
+        errorUtil.setDatabaseService(databaseService);
+        errorUtil.refresh();
+        routeRegistry.addReloadListener(errorUtil::refresh);
+        return errorUtil;
+    }
+
+    // Validation rules are compiled into per-API plans and recompiled with the route table
+    @Bean
+    public ValidationEngine validationEngine(DatabaseService databaseService, RouteRegistry routeRegistry,
+                                             @Value("${daraja.validation.reorder-interval-ms:10000}") long reorderIntervalMillis) {
+        ValidationEngine validationEngine = ValidationEngine.getInstance();
+        validationEngine.setDatabaseService(databaseService);
+        validationEngine.setReorderIntervalMillis(reorderIntervalMillis);
+        validationEngine.refresh();
+        routeRegistry.addReloadListener(validationEngine::refresh);
+        return validationEngine;
+    }
+
     // TODO: Register the ApiHandler Servlet
     @Bean
-    public ServletRegistrationBean<ApiHandler> apiHandlerServlet() {
-        ServletRegistrationBean<ApiHandler> servletRegistrationBean = new ServletRegistrationBean<>(new ApiHandler(), "/api/*");
+    public ServletRegistrationBean<ApiHandler> apiHandlerServlet(RouteRegistry routeRegistry, RequestBodyBinder requestBodyBinder,
+                                                                 RequestExecutor requestExecutor, MicroBatcher microBatcher,
+                                                                 ResponseCache responseCache, RateLimiter rateLimiter,
+                                                                 @Value("${daraja.response.max-buffered-bytes:16777216}") long maxBufferedBytes) {
+        BufferedResponse.setMaxBodyBytes(maxBufferedBytes);
+        // A config change may change what a cached API returns (or whether it is cached at all)
+        routeRegistry.addReloadListener(responseCache::invalidateAll);
+        ServletRegistrationBean<ApiHandler> servletRegistrationBean = new ServletRegistrationBean<>(
+                new ApiHandler(routeRegistry, requestBodyBinder, requestExecutor, microBatcher, responseCache, rateLimiter),
+                "/api/*");
+        // Needed for the virtual and async execution modes, which hand requests off with startAsync
+        servletRegistrationBean.setAsyncSupported(true);
         return servletRegistrationBean;
     }
+
+    // Exact mapping, so it takes precedence over ApiHandler's /api/*
+    @Bean
+    public ServletRegistrationBean<BatchHandler> batchHandlerServlet(ServletRegistrationBean<ApiHandler> apiHandlerServlet,
+                                                                     RouteRegistry routeRegistry, RequestBodyBinder requestBodyBinder,
+                                                                     RequestExecutor requestExecutor,
+                                                                     @Value("${daraja.api.batch.max-items:100}") int maxItems,
+                                                                     @Value("${daraja.api.batch.max-body-bytes:4194304}") long maxBodyBytes,
+                                                                     @Value("${daraja.api.batch.parallelism:8}") int parallelism) {
+        BatchHandler batchHandler = new BatchHandler(apiHandlerServlet.getServlet(), routeRegistry, requestBodyBinder,
+                requestExecutor, maxItems, maxBodyBytes, parallelism);
+        return new ServletRegistrationBean<>(batchHandler, "/api/v1/batch");
+    }
+
+    // Server counters as JSON; unauthenticated, so only registered with daraja.metrics.enabled=true
+    @Bean
+    @ConditionalOnProperty(name = "daraja.metrics.enabled", havingValue = "true")
+    public ServletRegistrationBean<MetricsHandler> metricsHandlerServlet(RequestExecutor requestExecutor,
+                                                                        DatabaseService databaseService,
+                                                                        ResponseCache responseCache,
+                                                                        RateLimiter rateLimiter,
+                                                                        UserStatusCache userStatusCache) {
+        return new ServletRegistrationBean<>(new MetricsHandler(requestExecutor, databaseService, responseCache,
+                rateLimiter, userStatusCache), "/metrics");
+    }
 }
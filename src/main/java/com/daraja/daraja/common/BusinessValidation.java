@@ -25,8 +25,6 @@ SOFTWARE.
 
 package com.daraja.daraja.common;
 
-import java.util.Objects;
-
 public class BusinessValidation {
     private String validationCode;
     private String validationDescription;
@@ -44,62 +42,43 @@ public class BusinessValidation {
      * @throws ValidationException If validation fails or an error occurs.
      */
     public void executeBusinessValidation(BusinessValidation validationRule, Object paramValue) throws ValidationException {
-        if (validationRule.validationCode == null || validationRule.validationCode.isEmpty()) {
-            throw new IllegalArgumentException("Validation rule cannot be null or empty.");
-        }
-
-        // Here you could parse the validation rule and apply the necessary business logic.
-        // For demonstration, we will assume the validationRule is a simple condition.
-
-        boolean isValid = applyBusinessRule(validationRule, paramValue);
-
-        if (!isValid) {
-            throw new ValidationException("Business validation failed for rule: " + validationRule + " - " + validationDescription);
+        ValidationCheck check = validationRule.compile();
+        if (!check.test(paramValue)) {
+            throw new ValidationException(check.getFailureMessage());
         }
     }
 
     /**
-     * Applies the business rule to the given parameter value.
+     * Parses the rule once into a reusable check. Besides the original "value > 100" form,
+     * rules may use the {@link RuleExpression} language, e.g.
+     * "amount between 1 and 5000 and amount != 13".
      *
-     * @param validationRule The business validation rule to apply.
-     * @param paramValue The value to validate.
-     * @return true if valid, false otherwise.
+     * @return The compiled check.
+     * @throws IllegalArgumentException If the rule is empty or does not parse.
      */
-    private boolean applyBusinessRule(BusinessValidation validationRule, Object paramValue) {
-        // Implement your business logic here.
-        // For example, if the validationRule is something like "value > 100"
-        // You would parse that and compare it against paramValue.
+    public ValidationCheck compile() {
+        RuleExpression expression = RuleExpression.compile(validationCode);
+        String message = "Business validation failed for rule: " + validationCode + " - " + validationDescription;
+        return new ExpressionCheck(expression, message);
+    }
 
-        // For the sake of this example, let's say the rule is simply a numeric check:
-        try {
-            // Assuming the rule is a simple threshold check, e.g., "value > 100"
-            String[] parts = validationRule.validationCode.split(" ");
-            if (parts.length != 3) {
-                throw new IllegalArgumentException("Invalid validation rule format.");
-            }
+    private static final class ExpressionCheck implements ValidationCheck {
+        private final RuleExpression expression;
+        private final String failureMessage;
 
-            String operator = parts[1];
-            Double threshold = Double.valueOf(parts[2]);
+        ExpressionCheck(RuleExpression expression, String failureMessage) {
+            this.expression = expression;
+            this.failureMessage = failureMessage;
+        }
 
-            if (paramValue instanceof Number) {
-                Double value = ((Number) paramValue).doubleValue();
+        @Override
+        public boolean test(Object paramValue) {
+            return expression.test(paramValue);
+        }
 
-                switch (operator) {
-                    case ">":
-                        return value > threshold;
-                    case "<":
-                        return value < threshold;
-                    case "=":
-                        return Objects.equals(value, threshold);
-                    // Add more operators as needed
-                    default:
-                        throw new IllegalArgumentException("Unsupported operator: " + operator);
-                }
-            } else {
-                throw new IllegalArgumentException("Parameter value must be a number for this validation rule.");
-            }
-        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-            throw new IllegalArgumentException("Error processing validation rule: " + validationRule, e);
+        @Override
+        public String getFailureMessage() {
+            return failureMessage;
         }
     }
 }
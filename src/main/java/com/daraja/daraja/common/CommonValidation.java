@@ -1,4 +1,199 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
 package com.daraja.daraja.common;
 
-public class CommonValidation {
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of common validators, keyed by the common_validation_code of a ValidationRules
+ * row and resolved when a {@link ValidationPlan} is compiled.
+ *
+ * <p>Built-in codes: is_not_negative, is_positive, not_blank, check_length (reads the
+ * rule's min_length and/or max_length columns), email, phone (optional '+' then 7 to 15
+ * digits), uuid.</p>
+ */
+public final class CommonValidation {
+    private static final Map<String, ValidatorFactory> validators = new ConcurrentHashMap<>();
+
+    static {
+        register("is_not_negative", (name, rule) -> new TextCheck(name + " must not be negative") {
+            @Override
+            public boolean test(Object value) {
+                return numberOf(value) >= 0;
+            }
+
+            @Override
+            boolean testText(CharSequence text) {
+                return RuleExpression.parseNumber(text) >= 0;
+            }
+        });
+        register("is_positive", (name, rule) -> new TextCheck(name + " must be greater than zero") {
+            @Override
+            public boolean test(Object value) {
+                return numberOf(value) > 0;
+            }
+
+            @Override
+            boolean testText(CharSequence text) {
+                return RuleExpression.parseNumber(text) > 0;
+            }
+        });
+        register("not_blank", (name, rule) -> new TextCheck(name + " must not be blank") {
+            @Override
+            boolean testText(CharSequence text) {
+                for (int i = 0; i < text.length(); i++) {
+                    if (!Character.isWhitespace(text.charAt(i))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        });
+        register("check_length", CommonValidation::lengthCheck);
+        register("email", (name, rule) -> new TextCheck(name + " must be a valid email address") {
+            @Override
+            boolean testText(CharSequence text) {
+                return isEmail(text);
+            }
+        });
+        register("phone", (name, rule) -> new TextCheck(name + " must be a valid phone number") {
+            @Override
+            boolean testText(CharSequence text) {
+                int start = text.length() > 0 && text.charAt(0) == '+' ? 1 : 0;
+                int length = text.length() - start;
+                return length >= 7 && length <= 15 && isDigits(text, start, text.length());
+            }
+        });
+        register("uuid", (name, rule) -> new TextCheck(name + " must be a UUID") {
+            @Override
+            boolean testText(CharSequence text) {
+                if (text.length() != 36) {
+                    return false;
+                }
+                for (int i = 0; i < 36; i++) {
+                    char c = text.charAt(i);
+                    boolean hyphen = i == 8 || i == 13 || i == 18 || i == 23;
+                    if (hyphen ? c != '-' : Character.digit(c, 16) < 0) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+    }
+
+    private CommonValidation() {
+    }
+
+    /**
+     * Adds or replaces the validator for a code. Plans compiled afterwards pick it up.
+     */
+    public static void register(String code, ValidatorFactory factory) {
+        validators.put(code.trim().toLowerCase(Locale.ROOT), factory);
+    }
+
+    /**
+     * @return The check for the code, or null if no validator is registered for it.
+     */
+    public static ValidationCheck resolve(String code, String parameterName, Map<String, Object> rule) {
+        ValidatorFactory factory = validators.get(code.trim().toLowerCase(Locale.ROOT));
+        return factory == null ? null : factory.create(parameterName, rule);
+    }
+
+    private static ValidationCheck lengthCheck(String name, Map<String, Object> rule) {
+        int minLength = lengthArgument(rule, "min_length", 0);
+        int maxLength = lengthArgument(rule, "max_length", Integer.MAX_VALUE);
+        if (minLength == 0 && maxLength == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("check_length on " + name + " needs min_length or max_length");
+        }
+        if (minLength > maxLength) {
+            throw new IllegalArgumentException("check_length on " + name + " has min_length greater than max_length");
+        }
+        String message = maxLength == Integer.MAX_VALUE
+                ? name + " must be at least " + minLength + " characters"
+                : name + " must be between " + minLength + " and " + maxLength + " characters";
+        return new TextCheck(message) {
+            @Override
+            boolean testText(CharSequence text) {
+                return text.length() >= minLength && text.length() <= maxLength;
+            }
+        };
+    }
+
+    private static int lengthArgument(Map<String, Object> rule, String column, int defaultValue) {
+        Object value = rule.get(column);
+        if (value == null || value.toString().trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int length = Integer.parseInt(value.toString().trim());
+            if (length < 0) {
+                throw new IllegalArgumentException(column + " cannot be negative: " + value);
+            }
+            return length;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + ": " + value, e);
+        }
+    }
+
+    // Structural check: one '@', non-empty local part, dotted domain without empty labels
+    static boolean isEmail(CharSequence text) {
+        int at = -1;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '@') {
+                if (at >= 0) {
+                    return false;
+                }
+                at = i;
+            } else if (c <= ' ' || c == '(' || c == ')' || c == ',' || c == ';' || c == ':'
+                    || c == '<' || c == '>' || c == '[' || c == ']' || c == '\\' || c == '"') {
+                return false;
+            }
+        }
+        if (at < 1 || at > 64 || length - at - 1 < 3) {
+            return false;
+        }
+        boolean dotInDomain = false;
+        char previous = '@';
+        for (int i = at + 1; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (previous == '.' || previous == '@') {
+                    return false;
+                }
+                dotInDomain = true;
+            } else if (!Character.isLetterOrDigit(c) && c != '-') {
+                return false;
+            }
+            previous = c;
+        }
+        return dotInDomain && previous != '.';
+    }
 }
@@ -1,4 +1,202 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
 package com.daraja.daraja.common;
 
-public class DataTypeValidation {
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of data type validators, keyed by the data_validation_code of a ValidationRules
+ * row. Codes are resolved to checks when a {@link ValidationPlan} is compiled; the checks
+ * scan the value in place without parsing it into other objects.
+ *
+ * <p>Built-in codes: numeric (alias decimal), integer, boolean, date (yyyy-MM-dd),
+ * time (HH:mm or HH:mm:ss), datetime (date, 'T' or space, time, optional 'Z'),
+ * alpha, alphanumeric. is_not_negative and check_length were data validation codes before
+ * they moved to {@link CommonValidation}; they are still accepted here so existing
+ * ValidationRules rows keep working.</p>
+ */
+public final class DataTypeValidation {
+    private static final Map<String, ValidatorFactory> validators = new ConcurrentHashMap<>();
+
+    static {
+        register("numeric", (name, rule) -> new TextCheck(name + " must be a number") {
+            @Override
+            public boolean test(Object value) {
+                return !Double.isNaN(numberOf(value));
+            }
+
+            @Override
+            boolean testText(CharSequence text) {
+                return !Double.isNaN(RuleExpression.parseNumber(text));
+            }
+        });
+        register("decimal", validators.get("numeric"));
+        register("integer", (name, rule) -> new TextCheck(name + " must be a whole number") {
+            @Override
+            boolean testText(CharSequence text) {
+                int start = text.length() > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+') ? 1 : 0;
+                return isDigits(text, start, text.length());
+            }
+        });
+        register("boolean", (name, rule) -> new TextCheck(name + " must be true or false") {
+            @Override
+            boolean testText(CharSequence text) {
+                return equalsIgnoreCase(text, "true") || equalsIgnoreCase(text, "false")
+                        || equalsIgnoreCase(text, "1") || equalsIgnoreCase(text, "0");
+            }
+        });
+        register("date", (name, rule) -> new TextCheck(name + " must be a date in yyyy-MM-dd format") {
+            @Override
+            boolean testText(CharSequence text) {
+                return text.length() == 10 && isDate(text, 0);
+            }
+        });
+        register("time", (name, rule) -> new TextCheck(name + " must be a time in HH:mm:ss format") {
+            @Override
+            boolean testText(CharSequence text) {
+                return isTime(text, 0, text.length());
+            }
+        });
+        register("datetime", (name, rule) -> new TextCheck(name + " must be a date and time in yyyy-MM-dd HH:mm:ss format") {
+            @Override
+            boolean testText(CharSequence text) {
+                int end = text.length();
+                if (end > 0 && text.charAt(end - 1) == 'Z') {
+                    end--;
+                }
+                return end > 11 && isDate(text, 0) && (text.charAt(10) == 'T' || text.charAt(10) == ' ')
+                        && isTime(text, 11, end);
+            }
+        });
+        register("alpha", (name, rule) -> new TextCheck(name + " must contain letters only") {
+            @Override
+            boolean testText(CharSequence text) {
+                if (text.length() == 0) {
+                    return false;
+                }
+                for (int i = 0; i < text.length(); i++) {
+                    if (!Character.isLetter(text.charAt(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+        register("alphanumeric", (name, rule) -> new TextCheck(name + " must contain letters and digits only") {
+            @Override
+            boolean testText(CharSequence text) {
+                if (text.length() == 0) {
+                    return false;
+                }
+                for (int i = 0; i < text.length(); i++) {
+                    if (!Character.isLetterOrDigit(text.charAt(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+        register("is_not_negative", (name, rule) -> CommonValidation.resolve("is_not_negative", name, rule));
+        register("check_length", (name, rule) -> CommonValidation.resolve("check_length", name, rule));
+    }
+
+    private DataTypeValidation() {
+    }
+
+    /**
+     * Adds or replaces the validator for a code. Plans compiled afterwards pick it up.
+     */
+    public static void register(String code, ValidatorFactory factory) {
+        validators.put(code.trim().toLowerCase(Locale.ROOT), factory);
+    }
+
+    /**
+     * @return The check for the code, or null if no validator is registered for it.
+     */
+    public static ValidationCheck resolve(String code, String parameterName, Map<String, Object> rule) {
+        ValidatorFactory factory = validators.get(code.trim().toLowerCase(Locale.ROOT));
+        return factory == null ? null : factory.create(parameterName, rule);
+    }
+
+    static boolean isDate(CharSequence text, int start) {
+        if (text.length() < start + 10 || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-') {
+            return false;
+        }
+        int year = TextCheck.digits(text, start, 4);
+        int month = TextCheck.digits(text, start + 5, 2);
+        int day = TextCheck.digits(text, start + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1) {
+            return false;
+        }
+        return day <= daysInMonth(year, month);
+    }
+
+    static boolean isTime(CharSequence text, int start, int end) {
+        int length = end - start;
+        if ((length != 5 && length != 8) || text.charAt(start + 2) != ':') {
+            return false;
+        }
+        int hour = TextCheck.digits(text, start, 2);
+        int minute = TextCheck.digits(text, start + 3, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return false;
+        }
+        if (length == 8) {
+            int second = text.charAt(start + 5) == ':' ? TextCheck.digits(text, start + 6, 2) : -1;
+            return second >= 0 && second <= 59;
+        }
+        return true;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence text, String expected) {
+        if (text.length() != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.toLowerCase(text.charAt(i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
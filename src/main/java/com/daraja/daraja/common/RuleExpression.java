@@ -0,0 +1,705 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled rule over a single parameter value, used for business validations.
+ *
+ * <p>Grammar (keywords are case-insensitive, any identifier names the value being checked):</p>
+ * <pre>
+ *   expr      := or
+ *   or        := and (("or" | "||") and)*
+ *   and       := not (("and" | "&amp;&amp;") not)*
+ *   not       := ("not" | "!") not | "(" expr ")" | predicate
+ *   predicate := operand op operand                     op: &gt; &gt;= &lt; &lt;= = == !=
+ *              | operand "between" operand "and" operand
+ *              | operand "matches" 'regex'
+ *              | operand ["not"] "in" "(" literal ("," literal)* ")"
+ *   operand   := number | 'string' | identifier | ("len" | "length") "(" identifier ")"
+ * </pre>
+ *
+ * <p>Examples: {@code value > 100}, {@code amount between 1 and 5000 and amount != 13},
+ * {@code len(name) <= 40}, {@code code matches '^[A-Z]{3}$'},
+ * {@code currency in ('TZS', 'KES', 'USD')}.</p>
+ *
+ * <p>The rule is parsed once into a tree of nodes specialized for primitive doubles and
+ * {@code CharSequence}s. Evaluating it parses the value as a number at most once and does
+ * not box or allocate, except for the {@code Matcher} of a {@code matches} predicate. A
+ * {@link Number} value is only turned into text when the rule has a text predicate.
+ * Numeric predicates are false for values that are not numbers.</p>
+ */
+public final class RuleExpression {
+
+    private final String source;
+    private final BoolNode root;
+    private final boolean usesNumber;
+    private final boolean usesText;
+
+    private RuleExpression(String source, BoolNode root, boolean usesNumber, boolean usesText) {
+        this.source = source;
+        this.root = root;
+        this.usesNumber = usesNumber;
+        this.usesText = usesText;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the rule does not parse.
+     */
+    public static RuleExpression compile(String rule) {
+        if (rule == null || rule.trim().isEmpty()) {
+            throw new IllegalArgumentException("Validation rule cannot be null or empty.");
+        }
+        Parser parser = new Parser(rule);
+        BoolNode root = parser.parseExpression();
+        parser.expectEnd();
+        return new RuleExpression(rule, root, parser.usesNumber, parser.usesText);
+    }
+
+    public boolean test(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            // Purely numeric rules never read the text
+            return root.test(usesText ? value.toString() : "", number);
+        }
+        CharSequence text = value instanceof CharSequence ? (CharSequence) value : value.toString();
+        return root.test(text, usesNumber ? parseNumber(text) : Double.NaN);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * Parses a decimal without allocating for the common case (up to 15 significant
+     * digits, small exponent), where the result is exact; other forms fall back to
+     * {@link Double#parseDouble}. Returns NaN if the text is not a number.
+     */
+    static double parseNumber(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return Double.NaN;
+        }
+        int i = start;
+        boolean negative = false;
+        if (text.charAt(i) == '-' || text.charAt(i) == '+') {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDot = false;
+        boolean seenDigit = false;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && c == '0') {
+                    if (seenDot) {
+                        scale++;
+                    }
+                    continue;
+                }
+                if (++digits > 15) {
+                    return slowParse(text, start, end);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenDot) {
+                    scale++;
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else if (c == 'e' || c == 'E') {
+                return seenDigit ? slowParse(text, start, end) : Double.NaN;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!seenDigit) {
+            return Double.NaN;
+        }
+        if (scale > 22) {
+            return slowParse(text, start, end);
+        }
+        double result = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -result : result;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static double slowParse(CharSequence text, int start, int end) {
+        try {
+            return Double.parseDouble(text.subSequence(start, end).toString());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    // ---- evaluation nodes ----
+
+    private abstract static class BoolNode {
+        abstract boolean test(CharSequence text, double number);
+    }
+
+    private abstract static class NumNode {
+        abstract double eval(CharSequence text, double number);
+    }
+
+    private static final class ValueNum extends NumNode {
+        @Override
+        double eval(CharSequence text, double number) {
+            return number;
+        }
+    }
+
+    private static final class LengthNum extends NumNode {
+        @Override
+        double eval(CharSequence text, double number) {
+            return text.length();
+        }
+    }
+
+    private static final class ConstNum extends NumNode {
+        private final double constant;
+
+        ConstNum(double constant) {
+            this.constant = constant;
+        }
+
+        @Override
+        double eval(CharSequence text, double number) {
+            return constant;
+        }
+    }
+
+    private static final int GT = 0, GE = 1, LT = 2, LE = 3, EQ = 4, NE = 5;
+
+    private static final class Compare extends BoolNode {
+        private final int op;
+        private final NumNode left;
+        private final NumNode right;
+
+        Compare(int op, NumNode left, NumNode right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(CharSequence text, double number) {
+            double l = left.eval(text, number);
+            double r = right.eval(text, number);
+            if (Double.isNaN(l) || Double.isNaN(r)) {
+                return false;
+            }
+            switch (op) {
+                case GT:
+                    return l > r;
+                case GE:
+                    return l >= r;
+                case LT:
+                    return l < r;
+                case LE:
+                    return l <= r;
+                case EQ:
+                    return l == r;
+                default:
+                    return l != r;
+            }
+        }
+    }
+
+    private static final class Between extends BoolNode {
+        private final NumNode operand;
+        private final NumNode low;
+        private final NumNode high;
+
+        Between(NumNode operand, NumNode low, NumNode high) {
+            this.operand = operand;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        boolean test(CharSequence text, double number) {
+            double v = operand.eval(text, number);
+            return v >= low.eval(text, number) && v <= high.eval(text, number);
+        }
+    }
+
+    private static final class TextEquals extends BoolNode {
+        private final String expected;
+        private final boolean negate;
+
+        TextEquals(String expected, boolean negate) {
+            this.expected = expected;
+            this.negate = negate;
+        }
+
+        @Override
+        boolean test(CharSequence text, double number) {
+            return expected.contentEquals(text) != negate;
+        }
+    }
+
+    private static final class Matches extends BoolNode {
+        private final Pattern pattern;
+
+        Matches(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        boolean test(CharSequence text, double number) {
+            return pattern.matcher(text).matches();
+        }
+    }
+
+    private static final class InTextSet extends BoolNode {
+        private final Set<String> members;
+        private final boolean negate;
+
+        InTextSet(Set<String> members, boolean negate) {
+            this.members = members;
+            this.negate = negate;
+        }
+
+        @Override
+        boolean test(CharSequence text, double number) {
+            return members.contains(text instanceof String ? (String) text : text.toString()) != negate;
+        }
+    }
+
+    private static final class InNumberSet extends BoolNode {
+        private final NumNode operand;
+        private final double[] sortedMembers;
+        private final boolean negate;
+
+        InNumberSet(NumNode operand, double[] sortedMembers, boolean negate) {
+            this.operand = operand;
+            this.sortedMembers = sortedMembers;
+            this.negate = negate;
+        }
+
+        @Override
+        boolean test(CharSequence text, double number) {
+            double v = operand.eval(text, number);
+            if (Double.isNaN(v)) {
+                return false;
+            }
+            return (Arrays.binarySearch(sortedMembers, v) >= 0) != negate;
+        }
+    }
+
+    private static final class And extends BoolNode {
+        private final BoolNode left;
+        private final BoolNode right;
+
+        And(BoolNode left, BoolNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(CharSequence text, double number) {
+            return left.test(text, number) && right.test(text, number);
+        }
+    }
+
+    private static final class Or extends BoolNode {
+        private final BoolNode left;
+        private final BoolNode right;
+
+        Or(BoolNode left, BoolNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(CharSequence text, double number) {
+            return left.test(text, number) || right.test(text, number);
+        }
+    }
+
+    private static final class Not extends BoolNode {
+        private final BoolNode operand;
+
+        Not(BoolNode operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean test(CharSequence text, double number) {
+            return !operand.test(text, number);
+        }
+    }
+
+    // ---- compiler ----
+
+    private enum TokenType { NUMBER, STRING, IDENT, OP, LPAREN, RPAREN, COMMA, END }
+
+    private static final class Token {
+        final TokenType type;
+        final String text;
+        final int position;
+
+        Token(TokenType type, String text, int position) {
+            this.type = type;
+            this.text = text;
+            this.position = position;
+        }
+
+        boolean isKeyword(String keyword) {
+            return type == TokenType.IDENT && text.equalsIgnoreCase(keyword);
+        }
+    }
+
+    // Compile-time operand: what a predicate side refers to
+    private enum OperandKind { VALUE, LENGTH, NUMBER, STRING }
+
+    private static final class Operand {
+        final OperandKind kind;
+        final String text;
+
+        Operand(OperandKind kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+
+    private static final class Parser {
+        private final String source;
+        private final List<Token> tokens;
+        private int index;
+        boolean usesNumber;
+        // Set by text predicates and len(): they read the value as text
+        boolean usesText;
+
+        Parser(String source) {
+            this.source = source;
+            this.tokens = tokenize(source);
+        }
+
+        BoolNode parseExpression() {
+            BoolNode left = parseAnd();
+            while (peek().isKeyword("or") || isOp("||")) {
+                index++;
+                left = new Or(left, parseAnd());
+            }
+            return left;
+        }
+
+        private BoolNode parseAnd() {
+            BoolNode left = parseNot();
+            while (peek().isKeyword("and") || isOp("&&")) {
+                index++;
+                left = new And(left, parseNot());
+            }
+            return left;
+        }
+
+        private BoolNode parseNot() {
+            if (peek().isKeyword("not") || isOp("!")) {
+                index++;
+                return new Not(parseNot());
+            }
+            if (peek().type == TokenType.LPAREN) {
+                index++;
+                BoolNode inner = parseExpression();
+                expect(TokenType.RPAREN, ")");
+                return inner;
+            }
+            return parsePredicate();
+        }
+
+        private BoolNode parsePredicate() {
+            Operand left = parseOperand();
+            Token token = next();
+            if (token.isKeyword("between")) {
+                NumNode low = numeric(parseOperand(), token);
+                if (!next().isKeyword("and")) {
+                    throw error("'and' expected in between", token);
+                }
+                NumNode high = numeric(parseOperand(), token);
+                return new Between(numeric(left, token), low, high);
+            }
+            if (token.isKeyword("matches")) {
+                Token pattern = next();
+                if (pattern.type != TokenType.STRING) {
+                    throw error("quoted regular expression expected after matches", pattern);
+                }
+                if (left.kind != OperandKind.VALUE) {
+                    throw error("matches applies to the value", token);
+                }
+                try {
+                    usesText = true;
+                    return new Matches(Pattern.compile(pattern.text));
+                } catch (PatternSyntaxException e) {
+                    throw error("invalid regular expression: " + e.getDescription(), pattern);
+                }
+            }
+            boolean negate = false;
+            if (token.isKeyword("not")) {
+                negate = true;
+                token = next();
+                if (!token.isKeyword("in")) {
+                    throw error("'in' expected after not", token);
+                }
+            }
+            if (token.isKeyword("in")) {
+                return parseIn(left, negate, token);
+            }
+            if (token.type != TokenType.OP) {
+                throw error("comparison expected", token);
+            }
+            int op = operator(token);
+            Operand right = parseOperand();
+            if (left.kind == OperandKind.STRING || right.kind == OperandKind.STRING) {
+                Operand literal = left.kind == OperandKind.STRING ? left : right;
+                Operand other = literal == left ? right : left;
+                if (other.kind != OperandKind.VALUE || (op != EQ && op != NE)) {
+                    throw error("strings can only be compared to the value with = or !=", token);
+                }
+                usesText = true;
+                return new TextEquals(literal.text, op == NE);
+            }
+            return new Compare(op, numeric(left, token), numeric(right, token));
+        }
+
+        private BoolNode parseIn(Operand left, boolean negate, Token at) {
+            expect(TokenType.LPAREN, "(");
+            List<Token> members = new ArrayList<>();
+            do {
+                Token member = next();
+                if (member.type != TokenType.STRING && member.type != TokenType.NUMBER) {
+                    throw error("literal expected in list", member);
+                }
+                members.add(member);
+            } while (peek().type == TokenType.COMMA && next() != null);
+            expect(TokenType.RPAREN, ")");
+
+            boolean allNumbers = members.stream().allMatch(t -> t.type == TokenType.NUMBER);
+            if (allNumbers && left.kind != OperandKind.STRING) {
+                double[] values = new double[members.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = Double.parseDouble(members.get(i).text);
+                }
+                Arrays.sort(values);
+                return new InNumberSet(numeric(left, at), values, negate);
+            }
+            if (left.kind != OperandKind.VALUE) {
+                throw error("a list of strings applies to the value", at);
+            }
+            Set<String> values = new HashSet<>();
+            for (Token member : members) {
+                values.add(member.text);
+            }
+            usesText = true;
+            return new InTextSet(Set.copyOf(values), negate);
+        }
+
+        private Operand parseOperand() {
+            Token token = next();
+            switch (token.type) {
+                case NUMBER:
+                    return new Operand(OperandKind.NUMBER, token.text);
+                case STRING:
+                    return new Operand(OperandKind.STRING, token.text);
+                case IDENT:
+                    if ((token.isKeyword("len") || token.isKeyword("length")) && peek().type == TokenType.LPAREN) {
+                        index++;
+                        Token name = next();
+                        if (name.type != TokenType.IDENT) {
+                            throw error("identifier expected in " + token.text + "()", name);
+                        }
+                        expect(TokenType.RPAREN, ")");
+                        return new Operand(OperandKind.LENGTH, name.text);
+                    }
+                    return new Operand(OperandKind.VALUE, token.text);
+                default:
+                    throw error("operand expected", token);
+            }
+        }
+
+        private NumNode numeric(Operand operand, Token at) {
+            switch (operand.kind) {
+                case VALUE:
+                    usesNumber = true;
+                    return new ValueNum();
+                case LENGTH:
+                    usesText = true;
+                    return new LengthNum();
+                case NUMBER:
+                    return new ConstNum(Double.parseDouble(operand.text));
+                default:
+                    throw error("number expected", at);
+            }
+        }
+
+        private int operator(Token token) {
+            switch (token.text) {
+                case ">":
+                    return GT;
+                case ">=":
+                    return GE;
+                case "<":
+                    return LT;
+                case "<=":
+                    return LE;
+                case "=":
+                case "==":
+                    return EQ;
+                case "!=":
+                case "<>":
+                    return NE;
+                default:
+                    throw new IllegalArgumentException("Unsupported operator: " + token.text);
+            }
+        }
+
+        void expectEnd() {
+            if (peek().type != TokenType.END) {
+                throw error("unexpected input", peek());
+            }
+        }
+
+        private void expect(TokenType type, String text) {
+            Token token = next();
+            if (token.type != type) {
+                throw error("'" + text + "' expected", token);
+            }
+        }
+
+        private boolean isOp(String op) {
+            return peek().type == TokenType.OP && peek().text.equals(op);
+        }
+
+        private Token peek() {
+            return tokens.get(index);
+        }
+
+        private Token next() {
+            Token token = tokens.get(index);
+            if (token.type != TokenType.END) {
+                index++;
+            }
+            return token;
+        }
+
+        private IllegalArgumentException error(String message, Token at) {
+            return new IllegalArgumentException("Invalid validation rule '" + source + "' at position "
+                    + at.position + ": " + message);
+        }
+
+        private static List<Token> tokenize(String source) {
+            List<Token> tokens = new ArrayList<>();
+            int i = 0;
+            int n = source.length();
+            while (i < n) {
+                char c = source.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (Character.isDigit(c) || (c == '-' && i + 1 < n && Character.isDigit(source.charAt(i + 1)))
+                        || (c == '.' && i + 1 < n && Character.isDigit(source.charAt(i + 1)))) {
+                    int start = i++;
+                    while (i < n && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) {
+                        i++;
+                    }
+                    String number = source.substring(start, i);
+                    try {
+                        Double.parseDouble(number);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid number '" + number + "' in validation rule '" + source + "'");
+                    }
+                    tokens.add(new Token(TokenType.NUMBER, number, start));
+                } else if (c == '\'' || c == '"') {
+                    int start = i++;
+                    StringBuilder text = new StringBuilder();
+                    while (i < n && source.charAt(i) != c) {
+                        if (source.charAt(i) == '\\' && i + 1 < n) {
+                            i++;
+                        }
+                        text.append(source.charAt(i++));
+                    }
+                    if (i >= n) {
+                        throw new IllegalArgumentException("Unterminated string in validation rule '" + source + "'");
+                    }
+                    i++;
+                    tokens.add(new Token(TokenType.STRING, text.toString(), start));
+                } else if (Character.isLetter(c) || c == '_') {
+                    int start = i;
+                    while (i < n && (Character.isLetterOrDigit(source.charAt(i)) || source.charAt(i) == '_' || source.charAt(i) == '.')) {
+                        i++;
+                    }
+                    tokens.add(new Token(TokenType.IDENT, source.substring(start, i), start));
+                } else if (c == '(') {
+                    tokens.add(new Token(TokenType.LPAREN, "(", i++));
+                } else if (c == ')') {
+                    tokens.add(new Token(TokenType.RPAREN, ")", i++));
+                } else if (c == ',') {
+                    tokens.add(new Token(TokenType.COMMA, ",", i++));
+                } else {
+                    int start = i;
+                    String two = i + 1 < n ? source.substring(i, i + 2) : "";
+                    if (two.equals(">=") || two.equals("<=") || two.equals("==") || two.equals("!=")
+                            || two.equals("<>") || two.equals("&&") || two.equals("||")) {
+                        i += 2;
+                        tokens.add(new Token(TokenType.OP, two, start));
+                    } else if (c == '>' || c == '<' || c == '=' || c == '!') {
+                        i++;
+                        tokens.add(new Token(TokenType.OP, String.valueOf(c), start));
+                    } else {
+                        throw new IllegalArgumentException("Unexpected character '" + c + "' in validation rule '" + source + "'");
+                    }
+                }
+            }
+            tokens.add(new Token(TokenType.END, "", n));
+            return tokens;
+        }
+    }
+}
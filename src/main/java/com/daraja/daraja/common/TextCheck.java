@@ -0,0 +1,91 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.common;
+
+/**
+ * Base for validators that look at the characters of a value. Request parameters are bound
+ * as Strings, which are checked in place; other values are checked on their toString().
+ * A null value fails.
+ */
+abstract class TextCheck implements ValidationCheck {
+    private final String failureMessage;
+
+    TextCheck(String failureMessage) {
+        this.failureMessage = failureMessage;
+    }
+
+    abstract boolean testText(CharSequence text);
+
+    @Override
+    public boolean test(Object value) {
+        if (value == null) {
+            return false;
+        }
+        return testText(value instanceof CharSequence ? (CharSequence) value : value.toString());
+    }
+
+    @Override
+    public String getFailureMessage() {
+        return failureMessage;
+    }
+
+    // Numeric value of the text, or NaN; numbers are used as they are
+    static double numberOf(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof CharSequence) {
+            return RuleExpression.parseNumber((CharSequence) value);
+        }
+        return value == null ? Double.NaN : RuleExpression.parseNumber(value.toString());
+    }
+
+    static boolean isDigits(CharSequence text, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Parses a fixed-width unsigned number, or -1 if any character is not a digit
+    static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.common;
+
+/**
+ * One pre-compiled check on a request parameter value, built once when a
+ * {@link ValidationPlan} is compiled and evaluated on every request.
+ */
+public interface ValidationCheck {
+
+    /**
+     * @param value The parameter value, usually a String bound from the request body.
+     * @return true if the value passes.
+     */
+    boolean test(Object value);
+
+    // Message reported when test returns false; built at compile time
+    String getFailureMessage();
+}
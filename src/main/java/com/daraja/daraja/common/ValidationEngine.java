@@ -25,115 +25,177 @@ SOFTWARE.
 package com.daraja.daraja.common;
 
 import com.daraja.daraja.service.DatabaseService;
-import com.daraja.daraja.utility.ErrorHandlingUtility;
-
-import java.util.Arrays;
+import com.daraja.daraja.service.NamedQuery;
+import com.daraja.daraja.service.Row;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Validates request parameters against the ValidationRules configured per api_code.
+ *
+ * <p>{@link #refresh()} reads ValidationRules and BusinessValidation once (two queries in
+ * total) and compiles the rules of each api_code into an immutable {@link ValidationPlan},
+ * so {@link #validate} runs no queries and parses no rule strings.</p>
+ */
 public class ValidationEngine {
-    private static DatabaseService dbservice;
-    private static ErrorHandlingUtility errorUtil = ErrorHandlingUtility.getInstance();
+    private static final ValidationEngine instance = new ValidationEngine();
+
+    private volatile Map<String, ValidationPlan> plans = Collections.emptyMap();
+    private volatile long reorderIntervalMillis = ValidationPlan.DEFAULT_REORDER_INTERVAL_MILLIS;
+    // Where refresh() reads the rules; the shared DatabaseService until one is set
+    private volatile DatabaseService databaseService;
 
     private ValidationEngine() {
     }
 
+    // A separate engine over its own database, e.g. for tests
+    ValidationEngine(DatabaseService databaseService) {
+        this.databaseService = databaseService;
+    }
+
+    public static ValidationEngine getInstance() {
+        return instance;
+    }
+
     public static DatabaseService getDatabaseService() {
-        if (dbservice == null) {
-            dbservice = new DatabaseService();
+        return DatabaseService.getInstance();
+    }
+
+    // Fail-fast: throws on the first violation
+    public void validate(String apiCode, Map<String, ?> requestParams) throws ValidationException {
+        ValidationPlan plan = plans.get(apiCode);
+        if (plan != null) {
+            plan.validate(requestParams);
         }
-        return dbservice;
     }
 
-    public void validate(String apiCode, Map<String, Object> requestParams) throws ValidationException {
-        for (Map.Entry<String, Object> entry : requestParams.entrySet()) {
-            String paramName = entry.getKey();
-            Object paramValue = entry.getValue();
+    // Collect-all: every violation's message, empty if the request is valid
+    public List<String> validateAll(String apiCode, Map<String, ?> requestParams) {
+        ValidationPlan plan = plans.get(apiCode);
+        return plan == null ? List.of() : plan.validateAll(requestParams);
+    }
 
-            // Fetch validation rules based on api_code and parameter_name
-            boolean validationPassed = fetchValidationRules(apiCode, paramName, paramValue);
-            if (!validationPassed) {
-                throw new ValidationException("Validation failed for parameter: " + paramName);
-            }
-        }
+    public ValidationPlan getPlan(String apiCode) {
+        return plans.get(apiCode);
     }
 
-    private boolean fetchValidationRules(String apiCode, String parameterName, Object paramValue) throws ValidationException {
-        // Fetch validation rules from the database based on api_code and parameter_name
-        String query = "SELECT * FROM ValidationRules WHERE api_code = ? AND parameter_name = ?";
-        List<Map<String, Object>> rules = getDatabaseService().executeQuery(query,
-                Arrays.asList(apiCode, parameterName));
+    public void setDatabaseService(DatabaseService databaseService) {
+        this.databaseService = databaseService;
+    }
 
-        // Iterate through the rules and execute validations
+    // How often fail-fast plans re-sort their checks; applies from the next refresh
+    public void setReorderIntervalMillis(long reorderIntervalMillis) {
+        this.reorderIntervalMillis = reorderIntervalMillis;
+    }
+
+    // Recompiles every plan; if a table cannot be read the previous plans stay in place,
+    // while an empty ValidationRules table leaves no plans at all
+    public void refresh() {
+        List<Map<String, Object>> rules;
+        List<Map.Entry<String, BusinessValidation>> businessRows;
+        DatabaseService db = databaseService != null ? databaseService : getDatabaseService();
+        try {
+            // Rules stay maps: validator factories may read any column of their rule (e.g. min_length)
+            rules = db.queryChecked(NamedQuery.VALIDATION_RULES, Collections.emptyList(), Row::toMap);
+            businessRows = db.queryChecked(NamedQuery.BUSINESS_VALIDATIONS,
+                    Collections.emptyList(), row -> Map.entry(row.getString("id"),
+                            new BusinessValidation(row.getString("validation_code"), row.getString("validation_description"))));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return;
+        }
+        Map<String, BusinessValidation> businessValidations = new HashMap<>();
+        for (Map.Entry<String, BusinessValidation> entry : businessRows) {
+            businessValidations.put(entry.getKey(), entry.getValue());
+        }
+
+        // api_code -> parameter_name -> checks, in table order
+        Map<String, Map<String, List<ValidationCheck>>> checks = new HashMap<>();
         for (Map<String, Object> rule : rules) {
-            String validationRule = (String) rule.get("validation_rule");
-            String businessValidationId = (String) rule.get("id");
-
-            // Retrieve codes from the rule
-            String businessValidationCode = (String) rule.get("business_validation_code");
-            String dataValidationCode = (String) rule.get("data_validation_code");
-            String commonValidationCode = (String) rule.get("common_validation_code");
-
-            // Check and execute appropriate validation
-            if (businessValidationCode != null && !businessValidationCode.isEmpty()) {
-                // Fetch business validation description and execute the validation
-                BusinessValidation businessValidation = fetchBusinessValidation(businessValidationId);
-                businessValidation.executeBusinessValidation(businessValidation, paramValue);
-            } else if (dataValidationCode != null && !dataValidationCode.isEmpty()) {
-                executeDataTypeValidation(dataValidationCode, paramValue, rule);
-            } else if (commonValidationCode != null && !commonValidationCode.isEmpty()) {
-                executeCommonValidation(commonValidationCode, paramValue);
-            } else {
-                throw new ValidationException("No valid validation type found for parameter: " + parameterName);
+            String apiCode = asString(rule.get("api_code"));
+            String parameterName = asString(rule.get("parameter_name"));
+            ValidationCheck check = compileRule(rule, parameterName, businessValidations);
+            if (check != null) {
+                checks.computeIfAbsent(apiCode, k -> new LinkedHashMap<>())
+                        .computeIfAbsent(parameterName, k -> new ArrayList<>())
+                        .add(check);
             }
         }
-        return true; // Return true if all validations pass
-    }
 
-    private BusinessValidation fetchBusinessValidation(String validationCode) throws ValidationException {
-        String query = "SELECT * FROM BusinessValidation WHERE id = ?";
-        List<Map<String, Object>> validations = getDatabaseService().executeQuery(query, Arrays.asList(validationCode));
+        Map<String, ValidationPlan> compiled = new HashMap<>();
+        for (Map.Entry<String, Map<String, List<ValidationCheck>>> entry : checks.entrySet()) {
+            compiled.put(entry.getKey(), new ValidationPlan(entry.getValue(), reorderIntervalMillis));
+        }
+        plans = Map.copyOf(compiled);
+        System.out.println("Validation plans compiled for " + plans.size() + " API(s)");
+    }
 
-        if (validations.isEmpty()) {
-            throw new ValidationException("No business validation found for code: " + validationCode);
+    // Unknown or broken rules compile to a failing check rather than being skipped
+    private ValidationCheck compileRule(Map<String, Object> rule, String parameterName,
+                                        Map<String, BusinessValidation> businessValidations) {
+        // Retrieve codes from the rule
+        String businessValidationCode = asString(rule.get("business_validation_code"));
+        String dataValidationCode = asString(rule.get("data_validation_code"));
+        String commonValidationCode = asString(rule.get("common_validation_code"));
+
+        if (!businessValidationCode.isEmpty()) {
+            // Business validations are keyed by the rule id
+            String businessValidationId = asString(rule.get("id"));
+            BusinessValidation businessValidation = businessValidations.get(businessValidationId);
+            if (businessValidation == null) {
+                return failing("No business validation found for code: " + businessValidationId);
+            }
+            try {
+                return businessValidation.compile();
+            } catch (IllegalArgumentException e) {
+                // A broken rule rejects requests rather than letting them through unchecked
+                e.printStackTrace();
+                return failing(e.getMessage());
+            }
+        } else if (!dataValidationCode.isEmpty()) {
+            return resolve(dataValidationCode, parameterName, rule, true);
+        } else if (!commonValidationCode.isEmpty()) {
+            return resolve(commonValidationCode, parameterName, rule, false);
         }
+        return failing("No valid validation type found for parameter: " + parameterName);
+    }
 
-        Map<String, Object> validation = validations.get(0);
-        return new BusinessValidation(
-                (String) validation.get("validation_code"),
-                (String) validation.get("validation_description")
-        );
+    private static ValidationCheck resolve(String code, String parameterName, Map<String, Object> rule, boolean dataType) {
+        try {
+            ValidationCheck check = dataType
+                    ? DataTypeValidation.resolve(code, parameterName, rule)
+                    : CommonValidation.resolve(code, parameterName, rule);
+            if (check == null) {
+                return failing((dataType ? "Unknown data type validation rule: " : "Unknown common validation rule: ") + code);
+            }
+            return check;
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            return failing(e.getMessage());
+        }
     }
 
-    private void executeDataTypeValidation(String rule, Object value, Map<String, Object> ruleDetails) throws ValidationException {
-        //TODO these one we require userstory and roadmap
-        // Implement data type validation logic based on the rule
-//        switch (rule) {
-//            case "is_not_negative":
-//                if (!DataTypeValidation.isNotNegative((double) value)) {
-//                    throw new ValidationException("Value cannot be negative.");
-//                }
-//                break;
-//            case "check_length":
-//                int minLength = Integer.parseInt((String) ruleDetails.get("min_length"));
-//                int maxLength = Integer.parseInt((String) ruleDetails.get("max_length"));
-//                if (!DataTypeValidation.checkLength((String) value, minLength, maxLength)) {
-//                    throw new ValidationException("Length check failed.");
-//                }
-//                break;
-//            // Add more rules as needed
-//            default:
-//                throw new ValidationException("Unknown data type validation rule: " + rule);
-//        }
+    private static ValidationCheck failing(String message) {
+        return new ValidationCheck() {
+            @Override
+            public boolean test(Object value) {
+                return false;
+            }
+
+            @Override
+            public String getFailureMessage() {
+                return message;
+            }
+        };
     }
 
-    private void executeCommonValidation(String rule, Object value) throws ValidationException {
-        // Implement common validation logic based on the rule
-        switch (rule) {
-            // Example implementations
-            // Add common validation rules as needed
-            default:
-                throw new ValidationException("Unknown common validation rule: " + rule);
-        }
+    private static String asString(Object value) {
+        return value == null ? "" : value.toString().trim();
     }
 }
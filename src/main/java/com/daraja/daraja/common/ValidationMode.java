@@ -0,0 +1,45 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.common;
+
+/**
+ * How request validation reports failures, set per api_code by the validation_mode column
+ * of APIFETCHCONFIG.
+ */
+public enum ValidationMode {
+    /** Stop at the first violation; checks are ordered so likely failures run first. */
+    FAIL_FAST,
+    /** Report every missing parameter and every violation in one response. */
+    COLLECT_ALL;
+
+    // Anything other than collect_all (including no value) is fail-fast, the original behaviour
+    public static ValidationMode fromConfig(String value) {
+        if (value != null && value.trim().replace('-', '_').equalsIgnoreCase("collect_all")) {
+            return COLLECT_ALL;
+        }
+        return FAIL_FAST;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Immutable, compiled validation rules for one api_code: for each parameter name, the
+ * checks to run on its value. Validating a request is a pure in-memory pass.
+ *
+ * <p>{@link #validate} (fail-fast) runs the checks in an order learned from traffic: each
+ * check counts its evaluations and failures and samples its running time, and every
+ * reorder interval the checks are re-sorted by expected cost per failure found
+ * (average cost / failure rate), so cheap checks that often fail run first.
+ * {@link #validateAll} (collect-all) runs every check in the configured order.</p>
+ */
+public final class ValidationPlan {
+
+    public static final long DEFAULT_REORDER_INTERVAL_MILLIS = 10_000;
+
+    // One in this many fail-fast evaluations is timed
+    private static final int TIMING_SAMPLE_RATE = 64;
+
+    private final Entry[] entries;
+    private final long reorderIntervalNanos;
+    private final AtomicBoolean reordering = new AtomicBoolean();
+    private volatile Entry[] failFastOrder;
+    private volatile long nextReorderNanos;
+
+    public ValidationPlan(Map<String, List<ValidationCheck>> checksByParameter) {
+        this(checksByParameter, DEFAULT_REORDER_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param reorderIntervalMillis How often fail-fast order is recomputed; 0 keeps the configured order.
+     */
+    public ValidationPlan(Map<String, List<ValidationCheck>> checksByParameter, long reorderIntervalMillis) {
+        List<Entry> list = new ArrayList<>();
+        for (Map.Entry<String, List<ValidationCheck>> entry : checksByParameter.entrySet()) {
+            for (ValidationCheck check : entry.getValue()) {
+                list.add(new Entry(entry.getKey(), check));
+            }
+        }
+        this.entries = list.toArray(new Entry[0]);
+        this.failFastOrder = entries;
+        this.reorderIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reorderIntervalMillis);
+        this.nextReorderNanos = System.nanoTime() + reorderIntervalNanos;
+    }
+
+    /**
+     * Runs the checks of every parameter present in the request; parameters that are
+     * absent are left to the mandatory-parameter check.
+     *
+     * @throws ValidationException on the first failing check.
+     */
+    public void validate(Map<String, ?> requestParams) throws ValidationException {
+        if (reorderIntervalNanos > 0 && System.nanoTime() - nextReorderNanos > 0) {
+            reorder();
+        }
+        for (Entry entry : failFastOrder) {
+            Object value = requestParams.get(entry.parameterName);
+            if (value == null && !requestParams.containsKey(entry.parameterName)) {
+                continue;
+            }
+            if (!entry.run(value)) {
+                throw new ValidationException(entry.check.getFailureMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs every check of every parameter present in the request.
+     *
+     * @return The failure messages in configured order; empty if the request is valid.
+     */
+    public List<String> validateAll(Map<String, ?> requestParams) {
+        List<String> failures = null;
+        for (Entry entry : entries) {
+            Object value = requestParams.get(entry.parameterName);
+            if (value == null && !requestParams.containsKey(entry.parameterName)) {
+                continue;
+            }
+            if (!entry.check.test(value)) {
+                if (failures == null) {
+                    failures = new ArrayList<>();
+                }
+                failures.add(entry.check.getFailureMessage());
+            }
+        }
+        return failures == null ? List.of() : failures;
+    }
+
+    // Re-sorts the fail-fast order from the counters; one thread at a time, others keep the old order
+    void reorder() {
+        if (!reordering.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Entry[] sorted = entries.clone();
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i].score = sorted[i].expectedCostPerFailure();
+            }
+            // Stable, so checks with equal scores keep their configured order
+            Arrays.sort(sorted, Comparator.comparingDouble(e -> e.score));
+            failFastOrder = sorted;
+            nextReorderNanos = System.nanoTime() + reorderIntervalNanos;
+        } finally {
+            reordering.set(false);
+        }
+    }
+
+    // "parameter: failure message" of each check in current fail-fast order, for diagnostics
+    public List<String> getFailFastOrder() {
+        List<String> order = new ArrayList<>();
+        for (Entry entry : failFastOrder) {
+            order.add(entry.parameterName + ": " + entry.check.getFailureMessage());
+        }
+        return order;
+    }
+
+    private static final class Entry {
+        final String parameterName;
+        final ValidationCheck check;
+        final LongAdder evaluations = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder timedEvaluations = new LongAdder();
+        final LongAdder timedNanos = new LongAdder();
+        // Written only while reordering
+        double score;
+
+        Entry(String parameterName, ValidationCheck check) {
+            this.parameterName = parameterName;
+            this.check = check;
+        }
+
+        boolean run(Object value) {
+            boolean passed;
+            if (ThreadLocalRandom.current().nextInt(TIMING_SAMPLE_RATE) == 0) {
+                long start = System.nanoTime();
+                passed = check.test(value);
+                timedNanos.add(System.nanoTime() - start);
+                timedEvaluations.increment();
+            } else {
+                passed = check.test(value);
+            }
+            evaluations.increment();
+            if (!passed) {
+                failures.increment();
+            }
+            return passed;
+        }
+
+        double expectedCostPerFailure() {
+            long timed = timedEvaluations.sum();
+            // Untimed checks count as 1ns so they are ordered by failure rate alone
+            double cost = timed == 0 ? 1 : Math.max(1, (double) timedNanos.sum() / timed);
+            // Smoothed so a check that has not failed yet still gets a finite score
+            double failureRate = (failures.sum() + 1.0) / (evaluations.sum() + 2.0);
+            return cost / failureRate;
+        }
+    }
+}
@@ -25,6 +25,7 @@ SOFTWARE.
 
 package com.daraja.daraja.ctl;
 
+import com.daraja.daraja.utility.ApiResult;
 import com.daraja.daraja.utility.ErrorHandlingUtility;
 import com.daraja.daraja.utility.UtilityFunctions;
 
@@ -33,6 +34,17 @@ import java.util.Map;
 public abstract class BaseController {
     protected ErrorHandlingUtility errorUtil = ErrorHandlingUtility.getInstance();
 
+    // Controllers are created per request, so the outcome can live on the instance
+    private ApiResult result = ApiResult.SUCCESS;
+
+    public ApiResult getResult() {
+        return result;
+    }
+
+    protected void setErrorByCode(String errorCode) {
+        result = errorUtil.errorByCode(errorCode);
+    }
+
     public void persistData(Map<String, Object> requestData) {
         if (!validate(requestData)) {
             throw new IllegalArgumentException("Validation failed");
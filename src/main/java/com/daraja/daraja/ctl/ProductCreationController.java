@@ -25,16 +25,19 @@ SOFTWARE.
 
 package com.daraja.daraja.ctl;
 
+import com.daraja.daraja.common.RuleExpression;
+
 import java.util.Map;
 
 public class ProductCreationController extends BaseController {
+    private static final RuleExpression PRICE_RULE = RuleExpression.compile("price > 0");
 
     @Override
     protected boolean validate(Map<String, Object> requestData) {
         //TODO Custom validation logic for product creation
         // For example, check if price is positive
-        if (requestData.containsKey("price") && (Double) requestData.get("price") <= 0) {
-            errorUtil.setErrorByCode("ERR10002");
+        if (requestData.containsKey("price") && !PRICE_RULE.test(requestData.get("price"))) {
+            setErrorByCode("ERR10002");
             return false;
         }
         return true; // All validations passed
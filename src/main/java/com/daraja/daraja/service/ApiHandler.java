@@ -25,72 +25,168 @@ SOFTWARE.
 
 package com.daraja.daraja.service;
 
+import com.daraja.daraja.common.ValidationEngine;
+import com.daraja.daraja.common.ValidationException;
+import com.daraja.daraja.common.ValidationMode;
 import com.daraja.daraja.utility.ApiResponse;
+import com.daraja.daraja.utility.ApiResult;
 import com.daraja.daraja.utility.UtilityFunctions;
 import com.daraja.daraja.utility.ErrorHandlingUtility;
+import com.daraja.daraja.utility.RequestBodyBinder;
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
-import java.sql.Date;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class ApiHandler extends HttpServlet {
 
-    ErrorHandlingUtility errorUtil = ErrorHandlingUtility.getInstance();
+    private final ErrorHandlingUtility errorUtil = ErrorHandlingUtility.getInstance();
+
+    private final RouteRegistry routeRegistry;
+    private final RequestBodyBinder requestBodyBinder;
+    private final RequestExecutor requestExecutor;
+    private final MicroBatcher microBatcher;
+    private final ResponseCache responseCache;
+    private final RateLimiter rateLimiter;
+    private final AsyncPipeline asyncPipeline;
+
+    public ApiHandler(RouteRegistry routeRegistry, RequestBodyBinder requestBodyBinder, RequestExecutor requestExecutor,
+                      MicroBatcher microBatcher, ResponseCache responseCache, RateLimiter rateLimiter) {
+        this.routeRegistry = routeRegistry;
+        this.requestBodyBinder = requestBodyBinder;
+        this.requestExecutor = requestExecutor;
+        this.microBatcher = microBatcher;
+        this.responseCache = responseCache;
+        this.rateLimiter = rateLimiter;
+        this.asyncPipeline = new AsyncPipeline(this, requestBodyBinder, requestExecutor);
+    }
 
     @Override
     protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        switch (requestExecutor.getMode()) {
+            case VIRTUAL:
+                dispatchToVirtualThread(req, resp);
+                break;
+            case ASYNC:
+                asyncPipeline.start(req, resp);
+                break;
+            default:
+                process(req, resp);
+        }
+    }
+
+    // Free the connector thread: the pipeline continues on a virtual thread
+    private void dispatchToVirtualThread(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(0);
+        boolean dispatched = requestExecutor.dispatch(() -> {
+            HttpServletResponse asyncResp = (HttpServletResponse) asyncContext.getResponse();
+            try {
+                process((HttpServletRequest) asyncContext.getRequest(), asyncResp);
+            } catch (Exception e) {
+                e.printStackTrace();
+                sendErrorIfPossible(asyncResp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error while processing API");
+            } finally {
+                asyncContext.complete();
+            }
+        });
+        if (!dispatched) {
+            sendErrorIfPossible(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy, retry later");
+            asyncContext.complete();
+        }
+    }
+
+    // The whole request pipeline; runs on whichever thread RequestExecutor chose
+    void process(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
-        // TODO Step 1: Extract the API code from the URL
-        List<Map<String, Object>>  api_preconfig = extractApiCodeFromUrl(req.getRequestURI());
-        String apiCode = "";
+        // Each step hands back its own immutable result; nothing is shared between requests
+        // Step 1: Resolve the API route (api_code, BO class/method, params) from the in-memory route table
+        ApiRoute route = resolveRoute(req);
+        ApiResult result = checkRoute(route);
+        if (result.isError()) {
+            writeError(resp, result);
+            return;
+        }
 
-        if (errorUtil.checkStatus()) {
-            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write(errorUtil.getResponseJson());
+        // Step 2: Bind the JSON body to the route's parameters, then validate them
+        Map<String, String> requestParams;
+        try {
+            requestParams = requestBodyBinder.bind(req, route);
+        } catch (IOException e) {
+            e.printStackTrace();
+            writeError(resp, errorUtil.errorByCode("ERR10005"));
             return;
         }
-        System.out.println(errorUtil.checkStatus());
-        apiCode = api_preconfig.get(0).get("api_code").toString().trim();
-        List<Map<String, Object>>  apiFetchConfig = UtilityFunctions.fetchApiConfig(apiCode);
 
-        if (errorUtil.checkStatus()) {
-            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write(errorUtil.getResponseJson());
+        result = validateRequest(route, requestParams);
+        if (result.isError()) {
+            writeError(resp, result);
             return;
         }
 
+        invokeBo(route, requestParams, resp);
+    }
 
-        // TODO Step 3: Fetch and validate request parameters
-        Map<String, String> requestParams = UtilityFunctions.getRequestParameters(req);
-        if (errorUtil.checkStatus()) {
-            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write(errorUtil.getResponseJson());
-            return;
+    ApiRoute resolveRoute(HttpServletRequest req) {
+        return routeRegistry.resolve(UtilityFunctions.getAfterV1(req.getRequestURI()));
+    }
+
+    // Rate limit, user check, mandatory parameters, then the compiled field and business rules
+    ApiResult validateRequest(ApiRoute route, Map<String, String> requestParams) {
+        ApiResult result = checkRateLimit(route, requestParams);
+        if (result.isError()) {
+            return result;
+        }
+        result = UtilityFunctions.validateRequestParams(route, requestParams);
+        if (result.isError() && !result.hasErrors()) {
+            return result;
         }
 
-        UtilityFunctions.validateRequestParams(apiFetchConfig, requestParams);
+        // Field and business rules from the compiled validation plan of this api_code
+        return validateRules(route, requestParams, result);
+    }
+
+    // Mandatory parameters and rules only, for calls whose user is already validated (batch items)
+    ApiResult validateParameters(ApiRoute route, Map<String, String> requestParams) {
+        ApiResult result = checkRateLimit(route, requestParams);
+        if (result.isError()) {
+            return result;
+        }
+        result = UtilityFunctions.checkMandatoryParams(route, requestParams);
+        if (result.isError() && !result.hasErrors()) {
+            return result;
+        }
+        return validateRules(route, requestParams, result);
+    }
 
-        if (errorUtil.checkStatus()) {
-            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write(errorUtil.getResponseJson());
+    // Served from the response cache when the route opts in; otherwise runs the BO
+    void invokeBo(ApiRoute route, Map<String, String> requestParams, HttpServletResponse resp) throws IOException {
+        if (!responseCache.supports(route)) {
+            runBo(route, requestParams, resp);
             return;
         }
+        try {
+            responseCache.invoke(route, requestParams, resp, buffered -> runBo(route, requestParams, buffered));
+        } catch (IOException e) {
+            e.printStackTrace();
+            sendErrorIfPossible(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error while invoking API");
+        }
+    }
 
-        // Step 4: Dynamically set request parameters using the 'set' methods from procctlmpg
+    // Sets the request parameters on the BO and invokes it; failures become a 500
+    private void runBo(ApiRoute route, Map<String, String> requestParams, HttpServletResponse resp) throws IOException {
+        // Step 3: Dynamically set request parameters using the BO's 'set' methods
         try {
             // Fetch the class that contains the set methods from procctlcfg
-            String targetClassName = (String) apiFetchConfig.get(0).get("className");
+            String targetClassName = route.getClassName();
             //something to note here we many have a common class that check-
             //TABLE define data filed, columnn data length and all of table properties
             //To check if it is new or existing Table and now  to perform operation call-
@@ -106,34 +202,88 @@ public class ApiHandler extends HttpServlet {
             return;
         }
 
-        // TODO Step 4: Dynamically invoke the class and method specified in procctlcfg
-        String className = (String) apiFetchConfig.get(0).get("className");
-        String methodName = (String) apiFetchConfig.get(0).get("methodName");
-
-        // TODO Step 5: Invoke the method dynamically
+        // Step 4: Invoke the BO method configured in APIFETCHCONFIG, or its bulk variant
+        String className = route.getClassName();
+        String methodName = route.getMethodName();
         try {
-            UtilityFunctions.invokeMethod(className, methodName, requestParams, (HttpServletResponse) resp);
+            if (microBatcher.supports(route)) {
+                // Joins concurrent calls to this api_code in one bulk BO call
+                microBatcher.invoke(route, requestParams, resp);
+            } else {
+                UtilityFunctions.invokeMethod(className, methodName, requestParams, (HttpServletResponse) resp);
+            }
         } catch (Exception e) {
             e.printStackTrace();
             resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error while invoking API");
         }
     }
 
-    private List<Map<String, Object>> extractApiCodeFromUrl(String url) {
-        errorUtil.clearError();
-        List<Map<String, Object>> apiPreconfigList = new ArrayList<>();
-        String requestPath = UtilityFunctions.getAfterV1(url);
-        List<Map<String, Object>> results = UtilityFunctions.getApiCode(requestPath);
-        // Process all results
-        if (!results.isEmpty()) {
-            apiPreconfigList.addAll(results);
-        }else{
-            errorUtil.setErrorByCode("ERR10001");
-        }
-        return apiPreconfigList;
+    // In memory only, so an over-limit user is turned away before any DB work
+    ApiResult checkRateLimit(ApiRoute route, Map<String, String> requestParams) {
+        if (rateLimiter.tryAcquire(route, requestParams.get("user_id"))) {
+            return ApiResult.SUCCESS;
+        }
+        return errorUtil.errorByCode(RateLimiter.ERROR_CODE);
+    }
+
+    ApiResult checkRoute(ApiRoute route) {
+        if (route == null) {
+            return errorUtil.errorByCode("ERR10001");
+        }
+        if (!route.isConfigured()) {
+            return errorUtil.errorByCode("ERR10002");
+        }
+        return ApiResult.SUCCESS;
+    }
+
+    /**
+     * Fail-fast reports the first violation. Collect-all adds every violation to the
+     * missing-parameter errors already found, so the client gets them in one response.
+     */
+    private ApiResult validateRules(ApiRoute route, Map<String, String> requestParams, ApiResult previous) {
+        ValidationEngine validationEngine = ValidationEngine.getInstance();
+        if (route.getValidationMode() != ValidationMode.COLLECT_ALL) {
+            try {
+                validationEngine.validate(route.getApiCode(), requestParams);
+            } catch (ValidationException e) {
+                return errorUtil.errorByCode("ERR10003").withDetail(e.getMessage());
+            }
+            return previous;
+        }
+
+        List<String> violations = validationEngine.validateAll(route.getApiCode(), requestParams);
+        if (violations.isEmpty()) {
+            return previous;
+        }
+        ApiResult invalid = errorUtil.errorByCode("ERR10003");
+        List<String> errors = new ArrayList<>(previous.getErrors());
+        for (String violation : violations) {
+            errors.add(invalid.getMessage() + " -> " + violation);
+        }
+        ApiResult first = previous.isError() ? previous : invalid.withDetail(violations.get(0));
+        return first.withErrors(errors);
+    }
+
+    private static void sendErrorIfPossible(HttpServletResponse resp, int status, String message) {
+        if (resp.isCommitted()) {
+            return;
+        }
+        try {
+            resp.sendError(status, message);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
+    // HTTP status of a pipeline error: 429 for a rate-limited call, 400 for everything else
+    static int errorStatus(ApiResult result) {
+        return RateLimiter.ERROR_CODE.equals(result.getErrorCode()) ? 429 : HttpServletResponse.SC_BAD_REQUEST;
+    }
 
+    private void writeError(HttpServletResponse resp, ApiResult result) throws IOException {
+        resp.setStatus(errorStatus(result));
+        resp.getOutputStream().write(result.toJsonBytes());
+    }
 
 }
 
@@ -0,0 +1,207 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.service;
+
+import com.daraja.daraja.common.ValidationMode;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, fully resolved routing entry for one request path. Built once from
+ * PREAPICONFIG, APIFETCHCONFIG and APIFETCHPARAM by {@link RouteRegistry} so that
+ * {@link ApiHandler} never has to go back to the database to dispatch a request.
+ */
+public final class ApiRoute {
+
+    private final String path;
+    private final String apiCode;
+    private final String className;
+    private final String methodName;
+    private final String postMethod;
+    private final List<RequestParam> requestParams;
+    private final Map<String, Object> fetchConfig;
+    private final Set<String> boundParameters;
+    private final ValidationMode validationMode;
+    private final long batchWindowMs;
+    private final int batchMaxSize;
+    private final long cacheTtlSeconds;
+    private final long rateLimitPerMinute;
+    private final long rateLimitBurst;
+
+    public ApiRoute(String path, String apiCode, Map<String, Object> fetchConfig, List<RequestParam> requestParams) {
+        this.path = path;
+        this.apiCode = apiCode;
+        this.className = asString(fetchConfig.get("className"));
+        this.methodName = asString(fetchConfig.get("methodName"));
+        this.postMethod = asString(fetchConfig.get("post_method"));
+        this.requestParams = List.copyOf(requestParams);
+        this.fetchConfig = Collections.unmodifiableMap(fetchConfig);
+        this.boundParameters = boundParameters(this.requestParams);
+        this.validationMode = ValidationMode.fromConfig(asString(fetchConfig.get("validation_mode")));
+        this.batchWindowMs = asLong(fetchConfig.get("batch_window_ms"));
+        this.batchMaxSize = (int) asLong(fetchConfig.get("batch_max_size"));
+        this.cacheTtlSeconds = asLong(fetchConfig.get("cache_ttl_seconds"));
+        this.rateLimitPerMinute = asLong(fetchConfig.get("rate_limit_per_minute"));
+        long burst = asLong(fetchConfig.get("rate_limit_burst"));
+        this.rateLimitBurst = burst > 0 ? burst : Math.max(1, rateLimitPerMinute / 60);
+    }
+
+    // Declared parameters plus user_id; null (bind everything) when none are declared
+    private static Set<String> boundParameters(List<RequestParam> requestParams) {
+        if (requestParams.isEmpty()) {
+            return null;
+        }
+        Set<String> names = new HashSet<>();
+        names.add("user_id");
+        for (RequestParam param : requestParams) {
+            names.add(param.getName());
+        }
+        return Set.copyOf(names);
+    }
+
+    private static String asString(Object value) {
+        return value == null ? "" : value.toString().trim();
+    }
+
+    // Optional numeric column: 0 when absent or not a number
+    private static long asLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return value == null ? 0 : Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getApiCode() {
+        return apiCode;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public String getPostMethod() {
+        return postMethod;
+    }
+
+    // False when PREAPICONFIG points at an api_code that has no APIFETCHCONFIG row
+    public boolean isConfigured() {
+        return !fetchConfig.isEmpty();
+    }
+
+    public boolean isPost() {
+        return postMethod.equalsIgnoreCase("post");
+    }
+
+    public List<RequestParam> getRequestParams() {
+        return requestParams;
+    }
+
+    // Body fields RequestBodyBinder keeps for this API, or null for all of them
+    public Set<String> getBoundParameters() {
+        return boundParameters;
+    }
+
+    // APIFETCHCONFIG.validation_mode; fail-fast unless set to collect_all
+    public ValidationMode getValidationMode() {
+        return validationMode;
+    }
+
+    // APIFETCHCONFIG.batch_window_ms: how long concurrent calls are collected into one bulk BO call
+    public long getBatchWindowMs() {
+        return batchWindowMs;
+    }
+
+    // APIFETCHCONFIG.batch_max_size: a collected batch is sent as soon as it has this many calls
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    // True when both batch columns are set; the BO also needs the bulk method
+    public boolean isMicroBatched() {
+        return batchWindowMs > 0 && batchMaxSize > 1;
+    }
+
+    // APIFETCHCONFIG.cache_ttl_seconds: how long responses are cached; 0 (the default) disables caching
+    public long getCacheTtlSeconds() {
+        return cacheTtlSeconds;
+    }
+
+    // APIFETCHCONFIG.rate_limit_per_minute: calls each user may make to this API; 0 (the default) means no limit
+    public long getRateLimitPerMinute() {
+        return rateLimitPerMinute;
+    }
+
+    // APIFETCHCONFIG.rate_limit_burst: calls a user may make at once; defaults to one second's worth
+    public long getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public boolean isRateLimited() {
+        return rateLimitPerMinute > 0;
+    }
+
+    // Raw APIFETCHCONFIG row, kept for columns the route does not model yet
+    public Map<String, Object> getFetchConfig() {
+        return fetchConfig;
+    }
+
+    /**
+     * One APIFETCHPARAM row: a request parameter name and whether it is mandatory.
+     */
+    public static final class RequestParam {
+        private final String name;
+        private final boolean mandatory;
+
+        public RequestParam(String name, boolean mandatory) {
+            this.name = name;
+            this.mandatory = mandatory;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isMandatory() {
+            return mandatory;
+        }
+    }
+}
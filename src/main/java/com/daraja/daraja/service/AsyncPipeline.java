@@ -0,0 +1,327 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.service;
+
+import com.daraja.daraja.utility.ApiResult;
+import com.daraja.daraja.utility.BufferedResponse;
+import com.daraja.daraja.utility.ErrorHandlingUtility;
+import com.daraja.daraja.utility.RequestBodyBinder;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@link ApiHandler} pipeline as non-blocking stages, used in the {@code async}
+ * execution mode:
+ *
+ * <ol>
+ *   <li>route resolve, on the container thread (in memory);</li>
+ *   <li>body read, by a {@link ReadListener} as data arrives;</li>
+ *   <li>bind and validate (user check, mandatory params, rules), on the VALIDATE pool;</li>
+ *   <li>BO invoke into a {@link BufferedResponse}, on the INVOKE pool;</li>
+ *   <li>response write, by a {@link WriteListener} as the client accepts data.</li>
+ * </ol>
+ *
+ * <p>No container thread waits on a slow client or a slow BO. A stage whose queue is
+ * full fails the request with 503, which is the backpressure.</p>
+ */
+final class AsyncPipeline {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final ErrorHandlingUtility errorUtil = ErrorHandlingUtility.getInstance();
+
+    private final ApiHandler handler;
+    private final RequestBodyBinder requestBodyBinder;
+    private final RequestExecutor requestExecutor;
+
+    AsyncPipeline(ApiHandler handler, RequestBodyBinder requestBodyBinder, RequestExecutor requestExecutor) {
+        this.handler = handler;
+        this.requestBodyBinder = requestBodyBinder;
+        this.requestExecutor = requestExecutor;
+    }
+
+    void start(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(requestExecutor.getAsyncTimeoutMillis());
+        Exchange exchange = new Exchange(asyncContext);
+        asyncContext.addListener(exchange);
+
+        ApiRoute route = handler.resolveRoute(req);
+        ApiResult result = handler.checkRoute(route);
+        if (result.isError()) {
+            exchange.respond(Outcome.of(result));
+            return;
+        }
+        long maxBodyBytes = requestBodyBinder.getMaxBodyBytes();
+        if (req.getContentLengthLong() > maxBodyBytes) {
+            exchange.respond(Outcome.of(errorUtil.errorByCode("ERR10005")));
+            return;
+        }
+
+        BodyReader bodyReader = new BodyReader(req.getInputStream(), maxBodyBytes);
+        bodyReader.body
+                .thenApplyAsync(body -> validate(route, body),
+                        requestExecutor.getStageExecutor(RequestExecutor.Stage.VALIDATE))
+                // Skip the BO if the request already timed out
+                .thenApplyAsync(outcome -> outcome.isFinal() || exchange.isResponded()
+                                ? outcome : invoke(route, outcome.requestParams, resp),
+                        requestExecutor.getStageExecutor(RequestExecutor.Stage.INVOKE))
+                .whenComplete((outcome, failure) -> exchange.respond(failure == null ? outcome : failed(failure)));
+        req.getInputStream().setReadListener(bodyReader);
+    }
+
+    private Outcome validate(ApiRoute route, byte[] body) {
+        Map<String, String> requestParams;
+        try {
+            requestParams = requestBodyBinder.bind(new ByteArrayInputStream(body), route.getBoundParameters());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Outcome.of(errorUtil.errorByCode("ERR10005"));
+        }
+        ApiResult result = handler.validateRequest(route, requestParams);
+        return result.isError() ? Outcome.of(result) : Outcome.next(requestParams);
+    }
+
+    private Outcome invoke(ApiRoute route, Map<String, String> requestParams, HttpServletResponse resp) {
+        BufferedResponse buffered = new BufferedResponse(resp);
+        try {
+            handler.invokeBo(route, requestParams, buffered);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Outcome.failure(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error while invoking API");
+        }
+        return Outcome.of(buffered);
+    }
+
+    private Outcome failed(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof RejectedExecutionException) {
+            return Outcome.failure(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy, retry later");
+        }
+        if (cause instanceof IOException) {
+            // Body too large, or the client went away mid-body
+            return Outcome.of(errorUtil.errorByCode("ERR10005"));
+        }
+        cause.printStackTrace();
+        return Outcome.failure(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error while processing API");
+    }
+
+    /**
+     * What a stage hands to the next: either the bound parameters to carry on with, or the
+     * final status and body (or error) to send.
+     */
+    private static final class Outcome {
+        final int status;
+        final byte[] body;
+        final String errorMessage;
+        final Map<String, String> requestParams;
+        // Headers the BO set, applied only when the outcome is actually sent
+        final BufferedResponse headers;
+
+        Outcome(int status, byte[] body, String errorMessage, Map<String, String> requestParams, BufferedResponse headers) {
+            this.status = status;
+            this.body = body;
+            this.errorMessage = errorMessage;
+            this.requestParams = requestParams;
+            this.headers = headers;
+        }
+
+        static Outcome next(Map<String, String> requestParams) {
+            return new Outcome(0, null, null, requestParams, null);
+        }
+
+        // A pipeline error, sent as its pre-serialized JSON with the status ApiHandler.writeError uses
+        static Outcome of(ApiResult result) {
+            return new Outcome(ApiHandler.errorStatus(result), result.toJsonBytes(), null, null, null);
+        }
+
+        static Outcome of(BufferedResponse buffered) {
+            if (buffered.isError()) {
+                String message = buffered.getErrorMessage() == null ? "" : buffered.getErrorMessage();
+                return new Outcome(buffered.getStatus(), null, message, null, buffered);
+            }
+            return new Outcome(buffered.getStatus(), buffered.getBody(), null, null, buffered);
+        }
+
+        static Outcome failure(int status, String message) {
+            return new Outcome(status, null, message == null ? "" : message, null, null);
+        }
+
+        boolean isFinal() {
+            return requestParams == null;
+        }
+    }
+
+    // Accumulates the body as the container reports data available; never blocks
+    private static final class BodyReader implements ReadListener {
+        final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private final ServletInputStream in;
+        private final long maxBytes;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+
+        BodyReader(ServletInputStream in, long maxBytes) {
+            this.in = in;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void onDataAvailable() throws IOException {
+            while (!body.isDone() && in.isReady() && !in.isFinished()) {
+                int n = in.read(chunk);
+                if (n < 0) {
+                    return;
+                }
+                buffer.write(chunk, 0, n);
+                if (buffer.size() > maxBytes) {
+                    body.completeExceptionally(new IOException("Request body exceeds " + maxBytes + " bytes"));
+                }
+            }
+        }
+
+        @Override
+        public void onAllDataRead() {
+            body.complete(buffer.toByteArray());
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            body.completeExceptionally(t instanceof IOException ? t : new IOException(t));
+        }
+    }
+
+    /**
+     * One request in flight: sends the outcome exactly once, whether it comes from the
+     * pipeline or from a container timeout, then completes the async context.
+     */
+    private static final class Exchange implements AsyncListener {
+        private final AsyncContext asyncContext;
+        private final AtomicBoolean responded = new AtomicBoolean();
+
+        Exchange(AsyncContext asyncContext) {
+            this.asyncContext = asyncContext;
+        }
+
+        boolean isResponded() {
+            return responded.get();
+        }
+
+        void respond(Outcome outcome) {
+            if (!responded.compareAndSet(false, true)) {
+                return;
+            }
+            HttpServletResponse resp = (HttpServletResponse) asyncContext.getResponse();
+            try {
+                if (outcome.headers != null) {
+                    outcome.headers.copyHeadersTo(resp);
+                }
+                if (outcome.errorMessage != null) {
+                    resp.sendError(outcome.status, outcome.errorMessage);
+                    asyncContext.complete();
+                    return;
+                }
+                resp.setStatus(outcome.status);
+                resp.setContentLength(outcome.body.length);
+                ServletOutputStream out = resp.getOutputStream();
+                out.setWriteListener(new BodyWriter(asyncContext, out, outcome.body));
+            } catch (Exception e) {
+                e.printStackTrace();
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            respond(Outcome.failure(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Request timed out"));
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            if (responded.compareAndSet(false, true)) {
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    // Writes the body as fast as the client accepts it, then completes the request
+    private static final class BodyWriter implements WriteListener {
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream out;
+        private final byte[] body;
+        private int offset;
+
+        BodyWriter(AsyncContext asyncContext, ServletOutputStream out, byte[] body) {
+            this.asyncContext = asyncContext;
+            this.out = out;
+            this.body = body;
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            while (out.isReady()) {
+                if (offset == body.length) {
+                    asyncContext.complete();
+                    return;
+                }
+                int n = Math.min(CHUNK_SIZE, body.length - offset);
+                out.write(body, offset, n);
+                offset += n;
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            t.printStackTrace();
+            asyncContext.complete();
+        }
+    }
+}
@@ -0,0 +1,461 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.service;
+
+import com.daraja.daraja.utility.ApiResult;
+import com.daraja.daraja.utility.BufferedResponse;
+import com.daraja.daraja.utility.ErrorHandlingUtility;
+import com.daraja.daraja.utility.RequestBodyBinder;
+import com.daraja.daraja.utility.UtilityFunctions;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@code POST /api/v1/batch}: runs many API calls from one HTTP request.
+ *
+ * <pre>
+ * {"user_id": "u1", "parallel": true,
+ *  "items": [{"path": "balance", "body": {"accountId": "42"}}, ...]}
+ * </pre>
+ *
+ * <p>The user is validated once and counted once per item. Each distinct path is resolved
+ * once, and items are grouped by api_code so a group runs against the same route and
+ * validation plan. Items then go through the usual mandatory-parameter check, rules and BO
+ * call, with the batch's user_id. When a group's BO declares the bulk method
+ * {@code methodName(List, List)}, the group's valid items go to it in one call (or in
+ * chunks of the route's batch_max_size). With {@code parallel}, up to
+ * {@code daraja.api.batch.parallelism} items run at once on virtual threads.</p>
+ *
+ * <p>The response is a JSON array streamed as items finish (so not necessarily in request
+ * order): {@code {"index": 0, "path": "balance", "status": 200, "body": {...}}}, with
+ * {@code "error"} instead of {@code "body"} when the BO sent an error. Problems with the
+ * batch itself (bad JSON, too many items, invalid user) get the usual 400 error body.</p>
+ */
+public class BatchHandler extends HttpServlet {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final ErrorHandlingUtility errorUtil = ErrorHandlingUtility.getInstance();
+
+    private final ApiHandler apiHandler;
+    private final RouteRegistry routeRegistry;
+    private final RequestBodyBinder requestBodyBinder;
+    private final RequestExecutor requestExecutor;
+    private final int maxItems;
+    private final long maxBodyBytes;
+    private final int parallelism;
+
+    public BatchHandler(ApiHandler apiHandler, RouteRegistry routeRegistry, RequestBodyBinder requestBodyBinder,
+                        RequestExecutor requestExecutor, int maxItems, long maxBodyBytes, int parallelism) {
+        this.apiHandler = apiHandler;
+        this.routeRegistry = routeRegistry;
+        this.requestBodyBinder = requestBodyBinder;
+        this.requestExecutor = requestExecutor;
+        this.maxItems = maxItems;
+        this.maxBodyBytes = maxBodyBytes;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+
+        Batch batch;
+        try {
+            if (req.getContentLengthLong() > maxBodyBytes) {
+                throw new IOException("Batch body exceeds " + maxBodyBytes + " bytes");
+            }
+            batch = readBatch(req);
+        } catch (IOException e) {
+            e.printStackTrace();
+            writeError(resp, errorUtil.errorByCode("ERR10005"));
+            return;
+        }
+        if (batch.items.size() > maxItems) {
+            writeError(resp, errorUtil.errorByCode("ERR10012").withDetail("a batch takes at most " + maxItems + " items"));
+            return;
+        }
+        if (batch.userId == null) {
+            writeError(resp, errorUtil.errorByCode("ERR10009"));
+            return;
+        }
+        ApiResult userResult;
+        try {
+            userResult = UtilityFunctions.validateUserIdAndProceed(batch.userId, batch.items.size());
+        } catch (Exception e) {
+            e.printStackTrace();
+            userResult = errorUtil.errorByCode("ERR10006");
+        }
+        if (userResult.isError()) {
+            writeError(resp, userResult);
+            return;
+        }
+
+        // Resolve each distinct path once, then group the items by api_code
+        Map<String, ApiRoute> routes = new HashMap<>();
+        Map<String, List<Item>> groups = new LinkedHashMap<>();
+        List<Item> unroutable = new ArrayList<>();
+        for (Item item : batch.items) {
+            item.route = routes.computeIfAbsent(item.path, this::resolve);
+            if (apiHandler.checkRoute(item.route).isError()) {
+                unroutable.add(item);
+            } else {
+                groups.computeIfAbsent(item.route.getApiCode(), k -> new ArrayList<>()).add(item);
+            }
+        }
+
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(resp.getOutputStream())) {
+            generator.writeStartArray();
+            for (Item item : unroutable) {
+                writeResult(generator, execute(item, batch.userId, resp));
+            }
+            if (batch.parallel) {
+                runParallel(groups, batch.userId, resp, generator);
+            } else {
+                for (List<Item> group : groups.values()) {
+                    if (isBulk(group)) {
+                        for (Result result : executeBulk(group, batch.userId, resp)) {
+                            writeResult(generator, result);
+                        }
+                        continue;
+                    }
+                    for (Item item : group) {
+                        writeResult(generator, execute(item, batch.userId, resp));
+                    }
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    // Items name the path as ApiHandler sees it after /v1/, e.g. "balance" or "/api/v1/balance"
+    private ApiRoute resolve(String path) {
+        return routeRegistry.resolve(path.toLowerCase().contains("/v1/") ? UtilityFunctions.getAfterV1(path) : path);
+    }
+
+    // Items (or whole bulk groups) run on virtual threads, at most `parallelism` at once;
+    // results are written as they finish
+    private void runParallel(Map<String, List<Item>> groups, String userId, HttpServletResponse resp,
+                             JsonGenerator generator) throws IOException {
+        BlockingQueue<Result> finished = new LinkedBlockingQueue<>();
+        Semaphore permits = new Semaphore(parallelism);
+        int expected = 0;
+        int written = 0;
+        for (List<Item> group : groups.values()) {
+            List<List<Item>> tasks = new ArrayList<>();
+            if (isBulk(group)) {
+                tasks.add(group);
+            } else {
+                for (Item item : group) {
+                    tasks.add(List.of(item));
+                }
+            }
+            for (List<Item> task : tasks) {
+                // Write whatever is done while waiting for a free slot
+                while (!permits.tryAcquire()) {
+                    writeResult(generator, take(finished));
+                    written++;
+                }
+                try {
+                    requestExecutor.getBatchExecutor().execute(() -> {
+                        List<Result> results;
+                        try {
+                            results = task.size() == 1 ? List.of(execute(task.get(0), userId, resp)) : executeBulk(task, userId, resp);
+                        } catch (Throwable t) {
+                            t.printStackTrace();
+                            results = failures(task, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error while invoking API");
+                        }
+                        // Free the slot before publishing: once the servlet thread has taken these
+                        // results it may go back to tryAcquire, and must find the permit there
+                        permits.release();
+                        finished.addAll(results);
+                    });
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    finished.addAll(failures(task, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy, retry later"));
+                }
+                expected += task.size();
+            }
+        }
+        while (written < expected) {
+            writeResult(generator, take(finished));
+            written++;
+        }
+    }
+
+    private static List<Result> failures(List<Item> items, int status, String message) {
+        List<Result> results = new ArrayList<>(items.size());
+        for (Item item : items) {
+            results.add(Result.failure(item, status, message));
+        }
+        return results;
+    }
+
+    private static Result take(BlockingQueue<Result> finished) throws IOException {
+        try {
+            return finished.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for batch items", e);
+        }
+    }
+
+    // Checks and binds one item; null when it is ready to invoke, otherwise its error result
+    private Result prepare(Item item, String userId) {
+        ApiResult result = apiHandler.checkRoute(item.route);
+        if (result.isError()) {
+            return Result.of(item, result);
+        }
+        if (item.route.getBoundParameters() != null) {
+            item.params.keySet().retainAll(item.route.getBoundParameters());
+        }
+        item.params.put("user_id", userId);
+
+        result = apiHandler.validateParameters(item.route, item.params);
+        return result.isError() ? Result.of(item, result) : null;
+    }
+
+    // One item through the per-call part of the pipeline; never throws
+    private Result execute(Item item, String userId, HttpServletResponse resp) {
+        try {
+            Result invalid = prepare(item, userId);
+            if (invalid != null) {
+                return invalid;
+            }
+            BufferedResponse buffered = new BufferedResponse(resp);
+            apiHandler.invokeBo(item.route, item.params, buffered);
+            return Result.of(item, buffered);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Result.failure(item, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error while invoking API");
+        }
+    }
+
+    // A group whose BO has the bulk method runs as bulk calls rather than one call per item
+    private static boolean isBulk(List<Item> group) {
+        if (group.size() < 2) {
+            return false;
+        }
+        ApiRoute route = group.get(0).route;
+        try {
+            return UtilityFunctions.hasBulkMethod(route.getClassName(), route.getMethodName());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // Valid items of one api_code go to the BO in bulk calls of at most batch_max_size (if set); never throws
+    private List<Result> executeBulk(List<Item> group, String userId, HttpServletResponse resp) {
+        List<Result> results = new ArrayList<>(group.size());
+        List<Item> ready = new ArrayList<>(group.size());
+        for (Item item : group) {
+            try {
+                Result invalid = prepare(item, userId);
+                if (invalid != null) {
+                    results.add(invalid);
+                    continue;
+                }
+                UtilityFunctions.setRequestParametersDynamically(item.route.getClassName(), item.params);
+                ready.add(item);
+            } catch (Exception e) {
+                e.printStackTrace();
+                results.add(Result.failure(item, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error setting request parameters"));
+            }
+        }
+        if (ready.isEmpty()) {
+            return results;
+        }
+        ApiRoute route = ready.get(0).route;
+        int chunkSize = route.getBatchMaxSize() > 1 ? route.getBatchMaxSize() : ready.size();
+        for (int start = 0; start < ready.size(); start += chunkSize) {
+            List<Item> chunk = ready.subList(start, Math.min(ready.size(), start + chunkSize));
+            List<Map<String, String>> params = new ArrayList<>(chunk.size());
+            List<BufferedResponse> buffered = new ArrayList<>(chunk.size());
+            for (Item item : chunk) {
+                params.add(item.params);
+                buffered.add(new BufferedResponse(resp));
+            }
+            try {
+                UtilityFunctions.invokeBulkMethod(route.getClassName(), route.getMethodName(), params, new ArrayList<>(buffered));
+                for (int i = 0; i < chunk.size(); i++) {
+                    results.add(Result.of(chunk.get(i), buffered.get(i)));
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                for (Item item : chunk) {
+                    results.add(Result.failure(item, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error while invoking API"));
+                }
+            }
+        }
+        return results;
+    }
+
+    private static void writeResult(JsonGenerator generator, Result result) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("index", result.item.index);
+        generator.writeStringField("path", result.item.path);
+        generator.writeNumberField("status", result.status);
+        if (result.errorMessage != null) {
+            generator.writeStringField("error", result.errorMessage);
+        } else if (result.body.length > 0) {
+            String body = new String(result.body, StandardCharsets.UTF_8);
+            generator.writeFieldName("body");
+            // BO output is embedded as JSON when it is JSON, otherwise as a string
+            if (isJson(result.body)) {
+                generator.writeRawValue(body);
+            } else {
+                generator.writeString(body);
+            }
+        }
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    private static boolean isJson(byte[] body) {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() == null) {
+                return false;
+            }
+            parser.skipChildren();
+            return parser.nextToken() == null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Batch readBatch(HttpServletRequest req) throws IOException {
+        Batch batch = new Batch();
+        try (JsonParser parser = requestBodyBinder.createParser(req.getInputStream(), maxBodyBytes)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Batch body must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (name.equals("user_id") && value != JsonToken.VALUE_NULL) {
+                    batch.userId = parser.getText();
+                } else if (name.equals("parallel")) {
+                    batch.parallel = value == JsonToken.VALUE_TRUE;
+                } else if (name.equals("items") && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        batch.items.add(readItem(parser, batch.items.size()));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return batch;
+    }
+
+    private Item readItem(JsonParser parser, int index) throws IOException {
+        Item item = new Item(index);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (name.equals("path") && value == JsonToken.VALUE_STRING) {
+                item.path = parser.getText();
+            } else if (name.equals("body") && value == JsonToken.START_OBJECT) {
+                // The route is not known yet, so every field is bound and filtered later
+                item.params = requestBodyBinder.bindObject(parser, null);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return item;
+    }
+
+    private void writeError(HttpServletResponse resp, ApiResult result) throws IOException {
+        resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        resp.getOutputStream().write(result.toJsonBytes());
+    }
+
+    private static final class Batch {
+        String userId;
+        boolean parallel;
+        final List<Item> items = new ArrayList<>();
+    }
+
+    private static final class Item {
+        final int index;
+        String path = "";
+        Map<String, String> params = new HashMap<>();
+        ApiRoute route;
+
+        Item(int index) {
+            this.index = index;
+        }
+    }
+
+    private static final class Result {
+        final Item item;
+        final int status;
+        final byte[] body;
+        final String errorMessage;
+
+        Result(Item item, int status, byte[] body, String errorMessage) {
+            this.item = item;
+            this.status = status;
+            this.body = body;
+            this.errorMessage = errorMessage;
+        }
+
+        // Pipeline errors carry their usual JSON body with 400, as for a single call
+        static Result of(Item item, ApiResult result) {
+            return new Result(item, ApiHandler.errorStatus(result), result.toJsonBytes(), null);
+        }
+
+        static Result of(Item item, BufferedResponse buffered) {
+            if (buffered.isError()) {
+                return failure(item, buffered.getStatus(), buffered.getErrorMessage());
+            }
+            return new Result(item, buffered.getStatus(), buffered.getBody(), null);
+        }
+
+        static Result failure(Item item, int status, String message) {
+            return new Result(item, status, null, message == null ? "" : message);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package com.daraja.daraja.service;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Per-row outcome of a {@link DatabaseService#batchUpdate} batch. A batch runs in one
+ * transaction, so either every row was applied or none was: on failure the row that
+ * failed is marked {@link Statement#EXECUTE_FAILED} and every other row
+ * {@link #NOT_APPLIED}.
+ */
+public final class BatchResult {
+
+    // The row was rolled back with the rest of its batch, or never ran
+    public static final int NOT_APPLIED = -4;
+
+    private final int[] updateCounts;
+    private final int failedRow;
+    private final SQLException error;
+
+    private BatchResult(int[] updateCounts, int failedRow, SQLException error) {
+        this.updateCounts = updateCounts;
+        this.failedRow = failedRow;
+        this.error = error;
+    }
+
+    static BatchResult succeeded(int[] updateCounts) {
+        return new BatchResult(updateCounts, -1, null);
+    }
+
+    /**
+     * @param failedRow The row the driver reported as failing, or -1 if it is unknown.
+     */
+    static BatchResult failed(int rows, int failedRow, SQLException error) {
+        int[] updateCounts = new int[rows];
+        Arrays.fill(updateCounts, NOT_APPLIED);
+        if (failedRow >= 0 && failedRow < rows) {
+            updateCounts[failedRow] = Statement.EXECUTE_FAILED;
+        }
+        return new BatchResult(updateCounts, failedRow < rows ? failedRow : -1, error);
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    public int size() {
+        return updateCounts.length;
+    }
+
+    /**
+     * @return The row's update count, {@link Statement#SUCCESS_NO_INFO} (e.g. for inserts
+     * rewritten into multi-row statements), {@link Statement#EXECUTE_FAILED} or
+     * {@link #NOT_APPLIED}.
+     */
+    public int getUpdateCount(int row) {
+        return updateCounts[row];
+    }
+
+    public int[] getUpdateCounts() {
+        return updateCounts.clone();
+    }
+
+    public boolean isApplied(int row) {
+        return updateCounts[row] >= 0 || updateCounts[row] == Statement.SUCCESS_NO_INFO;
+    }
+
+    // Index of the row that made the batch fail; -1 if it succeeded or the driver did not say
+    public int getFailedRow() {
+        return failedRow;
+    }
+
+    // Null when the batch succeeded
+    public SQLException getError() {
+        return error;
+    }
+}
@@ -24,121 +24,606 @@ SOFTWARE.
 */
 package com.daraja.daraja.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
-import java.io.InputStream;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Thin JDBC helper over the application's pooled {@link DataSource} (HikariCP, configured
+ * through the spring.datasource.* properties). There is one shared instance; code outside
+ * the Spring context reaches it through {@link #getInstance()}.
+ *
+ * <p>The gateway's own fixed statements are {@link NamedQuery}s: each is prepared once per
+ * pooled connection and kept open, and its column layout is read once, with counters of
+ * prepares vs. executions. On PostgreSQL, the pgjdbc prepareThreshold set through
+ * spring.datasource.hikari.data-source-properties makes those kept statements server-side
+ * prepared statements from their first use.</p>
+ */
+@Service
 public class DatabaseService {
 
-    private String jdbcUrl;
-    private String username;
-    private String password;
+    // Rows fetched per round trip by the streaming queries
+    public static final int DEFAULT_FETCH_SIZE = 500;
+    // Rows sent per JDBC batch by executeBatch
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static volatile DatabaseService instance;
+
+    private final DataSource dataSource;
+
+    // Time spent waiting for the pool to hand out a connection
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAccumulator maxAcquireNanos = new LongAccumulator(Long::max, 0L);
 
-    public DatabaseService() {
-        loadDatabaseProperties();
+    // Physical connection -> its named statements by ordinal. A pooled connection serves one
+    // thread at a time, so the array needs no locking; weak keys let connections the pool
+    // retires drop out (closing a connection closes its statements)
+    private final Cache<Connection, PreparedStatement[]> namedStatements = Caffeine.newBuilder().weakKeys().build();
+    private final AtomicReferenceArray<Columns> namedColumns = new AtomicReferenceArray<>(NamedQuery.COUNT);
+    private final LongAdder[] prepareCounts = counters();
+    private final LongAdder[] executeCounts = counters();
+
+    public DatabaseService(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
-    // Load database properties from application.properties
-    private void loadDatabaseProperties() {
-        Properties properties = new Properties();
-        try (InputStream input = getClass().getClassLoader().getResourceAsStream("application.properties")) {
-            if (input == null) {
-                System.out.println("Sorry, unable to find application.properties");
-                return;
-            }
-            properties.load(input);
-            this.jdbcUrl = properties.getProperty("spring.datasource.url");
-            this.username = properties.getProperty("spring.datasource.username");
-            this.password = properties.getProperty("spring.datasource.password");
-        } catch (Exception e) {
-            e.printStackTrace(); // Handle exceptions appropriately
+    private static LongAdder[] counters() {
+        LongAdder[] counters = new LongAdder[NamedQuery.COUNT];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
         }
+        return counters;
+    }
+
+    @PostConstruct
+    void register() {
+        instance = this;
+    }
+
+    public static DatabaseService getInstance() {
+        return instance;
     }
 
     private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(jdbcUrl, username, password);
+        long started = System.nanoTime();
+        try {
+            return dataSource.getConnection();
+        } catch (RuntimeException e) {
+            // Hikari reports a failed lazy pool start as an unchecked exception
+            throw new SQLException("Unable to obtain a database connection", e);
+        } finally {
+            long waited = System.nanoTime() - started;
+            acquireCount.increment();
+            acquireNanos.add(waited);
+            maxAcquireNanos.accumulate(waited);
+        }
+    }
+
+    /**
+     * Current pool usage. Active/idle/awaiting counts are zero until the pool has started.
+     */
+    public PoolMetrics getPoolMetrics() {
+        int active = 0;
+        int idle = 0;
+        int awaiting = 0;
+        if (dataSource instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+            if (pool != null) {
+                active = pool.getActiveConnections();
+                idle = pool.getIdleConnections();
+                awaiting = pool.getThreadsAwaitingConnection();
+            }
+        }
+        return new PoolMetrics(active, idle, awaiting, acquireCount.sum(), acquireNanos.sum(), maxAcquireNanos.get());
     }
 
     // Method to execute a query with parameters and return results
+    // One map per row; prefer query or queryRows for anything read often
     public List<Map<String, Object>> executeQuery(String query, List<Object> parameters) {
-        Connection conn = null;
-        PreparedStatement stmt = null;
-        ResultSet resultSet = null;
-        List<Map<String, Object>> results = new ArrayList<>();
+        return query(query, parameters, Row::toMap);
+    }
+
+    public List<Map<String, Object>> executeQuery(NamedQuery query, List<Object> parameters) {
+        return query(query, parameters, Row::toMap);
+    }
 
+    /**
+     * Maps each row as it is read, through one reused {@link Row} over the query's shared
+     * column header. Rows the mapper returns null for are skipped; an empty list is
+     * returned if the query fails.
+     */
+    public <T> List<T> query(String query, List<Object> parameters, RowMapper<T> mapper) {
         try {
-            conn = getConnection();
-            stmt = conn.prepareStatement(query);
+            return withStatement(query, stmt -> mapRows(stmt, parameters, null, mapper));
+        } catch (SQLException e) {
+            e.printStackTrace(); // Handle exceptions appropriately
+            return new ArrayList<>();
+        }
+    }
 
-            // Set parameters
-            for (int i = 0; i < parameters.size(); i++) {
-                stmt.setObject(i + 1, parameters.get(i));
-            }
+    // Same as query(String, ...) on the connection's cached statement and column layout
+    public <T> List<T> query(NamedQuery query, List<Object> parameters, RowMapper<T> mapper) {
+        try {
+            return withStatement(query, stmt -> mapRows(stmt, parameters, query, mapper));
+        } catch (SQLException e) {
+            e.printStackTrace(); // Handle exceptions appropriately
+            return new ArrayList<>();
+        }
+    }
 
-            // Execute query
-            resultSet = stmt.executeQuery();
-            ResultSetMetaData metaData = resultSet.getMetaData();
-            int columnCount = metaData.getColumnCount();
+    /**
+     * Same as {@link #query(NamedQuery, List, RowMapper)} but throws instead of returning an
+     * empty list, for loaders that must tell a failed read from an empty table.
+     */
+    public <T> List<T> queryChecked(NamedQuery query, List<Object> parameters, RowMapper<T> mapper) throws SQLException {
+        return withStatement(query, stmt -> mapRows(stmt, parameters, query, mapper));
+    }
 
-            // Process ResultSet and fill results
-            while (resultSet.next()) {
-                Map<String, Object> row = new HashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = metaData.getColumnName(i);
-                    row.put(columnName, resultSet.getObject(i));
-                }
-                results.add(row);
-            }
+    /**
+     * Reads the whole result as one column header plus an {@code Object[]} per row.
+     * Empty if the query fails.
+     */
+    public ResultRows queryRows(String query, List<Object> parameters) {
+        try {
+            return withStatement(query, stmt -> readRows(stmt, parameters, null));
         } catch (SQLException e) {
             e.printStackTrace(); // Handle exceptions appropriately
-        } finally {
-            // Close resources
-            if (resultSet != null) {
-                try {
-                    resultSet.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
+            return ResultRows.EMPTY;
+        }
+    }
+
+    public ResultRows queryRows(NamedQuery query, List<Object> parameters) {
+        try {
+            return withStatement(query, stmt -> readRows(stmt, parameters, query));
+        } catch (SQLException e) {
+            e.printStackTrace(); // Handle exceptions appropriately
+            return ResultRows.EMPTY;
+        }
+    }
+
+    // Same as queryRows(NamedQuery, ...) but throws when the query fails
+    public ResultRows queryRowsChecked(NamedQuery query, List<Object> parameters) throws SQLException {
+        return withStatement(query, stmt -> readRows(stmt, parameters, query));
+    }
+
+    /**
+     * Streams a query's rows to the handler as they are fetched, {@code fetchSize} at a time,
+     * so memory stays flat however large the result is. The cursor is forward-only and
+     * read-only; autocommit is off while it is open (PostgreSQL only uses a cursor inside a
+     * transaction) and is restored before the connection goes back to the pool.
+     *
+     * @return The number of rows handled.
+     * @throws SQLException If the query fails; the handler may already have seen some rows.
+     */
+    public long forEachRow(String query, List<Object> parameters, int fetchSize, RowHandler handler)
+            throws SQLException, IOException {
+        long count = 0;
+        try (Cursor cursor = openCursor(query, parameters, fetchSize)) {
+            while (cursor.next()) {
+                handler.handle(cursor.row);
+                count++;
             }
-            if (stmt != null) {
+        }
+        return count;
+    }
+
+    /**
+     * Like {@link #forEachRow}, as a lazy {@link Stream} of mapped rows; rows the mapper
+     * returns null for are skipped. The stream holds a pooled connection until it is
+     * closed, so always use it in try-with-resources. A failure while reading rows is
+     * thrown as an {@link IllegalStateException} wrapping the SQLException.
+     */
+    public <T> Stream<T> stream(String query, List<Object> parameters, int fetchSize, RowMapper<T> mapper) throws SQLException {
+        Cursor cursor = openCursor(query, parameters, fetchSize);
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
                 try {
-                    stmt.close();
+                    while (cursor.next()) {
+                        T mapped = mapper.map(cursor.row);
+                        if (mapped != null) {
+                            action.accept(mapped);
+                            return true;
+                        }
+                    }
+                    return false;
                 } catch (SQLException e) {
-                    e.printStackTrace();
+                    throw new IllegalStateException("Streaming query failed", e);
                 }
             }
-            if (conn != null) {
+        };
+        return StreamSupport.stream(rows, false).onClose(cursor::close);
+    }
+
+    private Cursor openCursor(String query, List<Object> parameters, int fetchSize) throws SQLException {
+        Cursor cursor = new Cursor(getConnection());
+        try {
+            cursor.open(query, parameters, fetchSize);
+            return cursor;
+        } catch (SQLException | RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    private static void setParameters(PreparedStatement stmt, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            stmt.setObject(i + 1, parameters.get(i));
+        }
+    }
+
+    private static void readValues(ResultSet resultSet, Object[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = resultSet.getObject(i + 1);
+        }
+    }
+
+
+    // Method to execute an update (insert, update, delete)
+    public int executeUpdate(String query, List<Object> parameters) {
+        try {
+            return withStatement(query, stmt -> update(stmt, parameters));
+        } catch (SQLException e) {
+            e.printStackTrace(); // Handle exceptions appropriately
+            return 0;
+        }
+    }
+
+    public int executeUpdate(NamedQuery query, List<Object> parameters) {
+        try {
+            return withStatement(query, stmt -> update(stmt, parameters));
+        } catch (SQLException e) {
+            e.printStackTrace(); // Handle exceptions appropriately
+            return 0;
+        }
+    }
+
+    // Method to execute one statement for many parameter lists in a single JDBC batch
+    // Returns the update count per parameter list, or an empty array if the batch failed
+    public int[] executeBatch(String query, List<List<Object>> parameterSets) {
+        BatchResult result = batchUpdate(query, parameterSets, DEFAULT_BATCH_SIZE);
+        return result.isSuccessful() ? result.getUpdateCounts() : new int[0];
+    }
+
+    public int[] executeBatch(NamedQuery query, List<List<Object>> parameterSets) {
+        BatchResult result = batchUpdate(query, parameterSets, DEFAULT_BATCH_SIZE);
+        return result.isSuccessful() ? result.getUpdateCounts() : new int[0];
+    }
+
+    /**
+     * Runs one statement for many parameter lists as JDBC batches of at most
+     * {@code batchSize} rows, all in one transaction. With pgjdbc's reWriteBatchedInserts
+     * each batch of inserts goes out as multi-row INSERTs, and rows report
+     * {@link java.sql.Statement#SUCCESS_NO_INFO}.
+     *
+     * @return The outcome per parameter list; on failure nothing was applied.
+     */
+    public BatchResult batchUpdate(String query, List<List<Object>> parameterSets, int batchSize) {
+        try {
+            return inTransaction(tx -> tx.batchUpdate(query, parameterSets, batchSize));
+        } catch (BatchFailedException e) {
+            e.printStackTrace(); // Handle exceptions appropriately
+            return e.getResult();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return BatchResult.failed(parameterSets.size(), -1, e);
+        }
+    }
+
+    public BatchResult batchUpdate(NamedQuery query, List<List<Object>> parameterSets, int batchSize) {
+        try {
+            return inTransaction(tx -> tx.batchUpdate(query, parameterSets, batchSize));
+        } catch (BatchFailedException e) {
+            e.printStackTrace(); // Handle exceptions appropriately
+            return e.getResult();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return BatchResult.failed(parameterSets.size(), -1, e);
+        }
+    }
+
+    /**
+     * Runs the work on one connection with autocommit off, and commits if it returns or
+     * rolls back if it throws. Autocommit is restored before the connection goes back to
+     * the pool.
+     */
+    public <T> T inTransaction(UnitOfWork<T> work) throws SQLException {
+        try (Connection conn = getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                T result = work.run(new Transaction(conn));
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
                 try {
-                    conn.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
+                    conn.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
                 }
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
             }
         }
-        return results;
     }
 
+    /**
+     * The statements of one {@link UnitOfWork}, all on the same connection. Failures are
+     * thrown so that the unit of work rolls back.
+     */
+    public final class Transaction {
+        private final Connection conn;
 
-    // Method to execute an update (insert, update, delete)
-    public int executeUpdate(String query, List<Object> parameters) {
-        int rowsAffected = 0;
+        private Transaction(Connection conn) {
+            this.conn = conn;
+        }
+
+        public int executeUpdate(String query, List<Object> parameters) throws SQLException {
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                return update(stmt, parameters);
+            }
+        }
+
+        public int executeUpdate(NamedQuery query, List<Object> parameters) throws SQLException {
+            return update(named(query), parameters);
+        }
+
+        public <T> List<T> query(String query, List<Object> parameters, RowMapper<T> mapper) throws SQLException {
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                return mapRows(stmt, parameters, null, mapper);
+            }
+        }
+
+        public <T> List<T> query(NamedQuery query, List<Object> parameters, RowMapper<T> mapper) throws SQLException {
+            return mapRows(named(query), parameters, query, mapper);
+        }
+
+        /**
+         * @throws BatchFailedException With the per-row outcome, if any row fails.
+         */
+        public BatchResult batchUpdate(String query, List<List<Object>> parameterSets, int batchSize) throws SQLException {
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                return batch(stmt, parameterSets, batchSize);
+            }
+        }
+
+        public BatchResult batchUpdate(NamedQuery query, List<List<Object>> parameterSets, int batchSize) throws SQLException {
+            return batch(named(query), parameterSets, batchSize);
+        }
+
+        private PreparedStatement named(NamedQuery query) throws SQLException {
+            PreparedStatement stmt = namedStatement(conn, query);
+            executeCounts[query.ordinal()].increment();
+            return stmt;
+        }
+    }
+
+    // Times the named query was prepared; stays at one per pooled connection once warm
+    public long getPrepareCount(NamedQuery query) {
+        return prepareCounts[query.ordinal()].sum();
+    }
+
+    public long getExecuteCount(NamedQuery query) {
+        return executeCounts[query.ordinal()].sum();
+    }
+
+    private interface StatementWork<R> {
+        R run(PreparedStatement stmt) throws SQLException;
+    }
+
+    // A statement prepared for this call and closed after it
+    private <R> R withStatement(String query, StatementWork<R> work) throws SQLException {
         try (Connection conn = getConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
+            return work.run(stmt);
+        }
+    }
+
+    // The named statement of the pooled connection, prepared on first use and kept open
+    private <R> R withStatement(NamedQuery query, StatementWork<R> work) throws SQLException {
+        try (Connection conn = getConnection()) {
+            PreparedStatement stmt = namedStatement(conn, query);
+            executeCounts[query.ordinal()].increment();
+            return work.run(stmt);
+        }
+    }
+
+    private PreparedStatement namedStatement(Connection conn, NamedQuery query) throws SQLException {
+        // Keyed by the physical connection: the pool hands out a new proxy on every borrow
+        // and closes the statements made through it when it is returned
+        Connection physical = conn.isWrapperFor(Connection.class) ? conn.unwrap(Connection.class) : conn;
+        PreparedStatement[] prepared = namedStatements.get(physical, k -> new PreparedStatement[NamedQuery.COUNT]);
+        PreparedStatement stmt = prepared[query.ordinal()];
+        if (stmt == null || stmt.isClosed()) {
+            stmt = physical.prepareStatement(query.getSql());
+            prepared[query.ordinal()] = stmt;
+            prepareCounts[query.ordinal()].increment();
+        }
+        return stmt;
+    }
+
+    private <T> List<T> mapRows(PreparedStatement stmt, List<Object> parameters, NamedQuery named,
+                                RowMapper<T> mapper) throws SQLException {
+        List<T> results = new ArrayList<>();
+        setParameters(stmt, parameters);
+        try (ResultSet resultSet = stmt.executeQuery()) {
+            Columns columns = columnsOf(resultSet, named);
+            Object[] values = new Object[columns.size()];
+            Row row = new Row(columns, values);
+            while (resultSet.next()) {
+                readValues(resultSet, values);
+                T mapped = mapper.map(row);
+                if (mapped != null) {
+                    results.add(mapped);
+                }
+            }
+        }
+        return results;
+    }
 
-            // Set parameters
-            for (int i = 0; i < parameters.size(); i++) {
-                stmt.setObject(i + 1, parameters.get(i));
+    private ResultRows readRows(PreparedStatement stmt, List<Object> parameters, NamedQuery named) throws SQLException {
+        setParameters(stmt, parameters);
+        try (ResultSet resultSet = stmt.executeQuery()) {
+            Columns columns = columnsOf(resultSet, named);
+            List<Object[]> rows = new ArrayList<>();
+            while (resultSet.next()) {
+                Object[] values = new Object[columns.size()];
+                readValues(resultSet, values);
+                rows.add(values);
             }
+            return new ResultRows(columns, rows);
+        }
+    }
 
-            // Execute update
-            rowsAffected = stmt.executeUpdate();
+    private static int update(PreparedStatement stmt, List<Object> parameters) throws SQLException {
+        setParameters(stmt, parameters);
+        return stmt.executeUpdate();
+    }
+
+    private static BatchResult batch(PreparedStatement stmt, List<List<Object>> parameterSets, int batchSize)
+            throws BatchFailedException {
+        int rows = parameterSets.size();
+        int[] updateCounts = new int[rows];
+        int start = 0;
+        try {
+            while (start < rows) {
+                int end = Math.min(rows, start + Math.max(1, batchSize));
+                for (int i = start; i < end; i++) {
+                    setParameters(stmt, parameterSets.get(i));
+                    stmt.addBatch();
+                }
+                int[] counts = stmt.executeBatch();
+                System.arraycopy(counts, 0, updateCounts, start, Math.min(counts.length, end - start));
+                start = end;
+            }
+            return BatchResult.succeeded(updateCounts);
+        } catch (BatchUpdateException e) {
+            int failed = failedIndex(e.getUpdateCounts());
+            throw new BatchFailedException(BatchResult.failed(rows, failed < 0 ? -1 : start + failed, e));
         } catch (SQLException e) {
-            e.printStackTrace(); // Handle exceptions appropriately
+            throw new BatchFailedException(BatchResult.failed(rows, -1, e));
+        } finally {
+            try {
+                // A kept named statement must not carry a failed batch into its next use
+                stmt.clearBatch();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Drivers either stop at the failing row (counts cover the rows before it) or go on
+    // and mark it EXECUTE_FAILED
+    private static int failedIndex(int[] counts) {
+        if (counts == null) {
+            return -1;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.EXECUTE_FAILED) {
+                return i;
+            }
+        }
+        return counts.length;
+    }
+
+    // Column names of a named query are read once; a different column count (the table
+    // changed under a SELECT *) reads them again
+    private Columns columnsOf(ResultSet resultSet, NamedQuery named) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        if (named == null) {
+            return Columns.of(metaData);
+        }
+        Columns columns = namedColumns.get(named.ordinal());
+        if (columns == null || columns.size() != metaData.getColumnCount()) {
+            columns = Columns.of(metaData);
+            namedColumns.set(named.ordinal(), columns);
+        }
+        return columns;
+    }
+
+    // An open forward-only result set and the connection it holds; close() is idempotent
+    private static final class Cursor implements AutoCloseable {
+        private final Connection conn;
+        private boolean restoreAutoCommit;
+        private PreparedStatement stmt;
+        private ResultSet resultSet;
+        private Object[] values;
+        private Row row;
+        private boolean closed;
+
+        Cursor(Connection conn) {
+            this.conn = conn;
+        }
+
+        void open(String query, List<Object> parameters, int fetchSize) throws SQLException {
+            if (conn.getAutoCommit()) {
+                conn.setAutoCommit(false);
+                restoreAutoCommit = true;
+            }
+            stmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            setParameters(stmt, parameters);
+            resultSet = stmt.executeQuery();
+            Columns columns = Columns.of(resultSet.getMetaData());
+            values = new Object[columns.size()];
+            row = new Row(columns, values);
+        }
+
+        boolean next() throws SQLException {
+            if (closed || !resultSet.next()) {
+                return false;
+            }
+            readValues(resultSet, values);
+            return true;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+                if (stmt != null) {
+                    stmt.close();
+                }
+                if (restoreAutoCommit) {
+                    // Nothing was written; ends the read transaction the cursor lived in
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
         }
-        return rowsAffected;
     }
 }
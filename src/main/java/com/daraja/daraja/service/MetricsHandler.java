@@ -0,0 +1,160 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package com.daraja.daraja.service;
+
+import com.daraja.daraja.utility.UtilityFunctions;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code GET /metrics}: the server's own counters as one JSON object, for dashboards and
+ * alerting to poll. Values are read when the request arrives; counters run since startup.
+ * Only registered when {@code daraja.metrics.enabled=true}; it has no authentication.
+ *
+ * <pre>
+ * {"execution": {"mode": "VIRTUAL", "inFlight": 12, "pinnedCount": 3, "pinnedMillis": 85,
+ *                "stages": {"VALIDATE": {"active": 0, "queued": 0, "rejected": 0}, ...}},
+ *  "dbPool": {"active": 4, "idle": 6, "awaiting": 0, "acquireCount": 1520,
+ *             "averageWaitMillis": 0.2, "maxWaitMillis": 31},
+ *  "statements": {"CONFIG_VERSION": {"prepared": 10, "executed": 2880}, ...},
+ *  "responseCache": {"hits": 950, "misses": 50, "coalesced": 12, "entries": 40},
+ *  "rateLimit": {"rejected": 7, "keys": 310},
+ *  "userCache": {"hits": 9800, "misses": 200, "evictions": 0, "entries": 180}}
+ * </pre>
+ */
+public class MetricsHandler extends HttpServlet {
+
+    private final RequestExecutor requestExecutor;
+    private final DatabaseService databaseService;
+    private final ResponseCache responseCache;
+    private final RateLimiter rateLimiter;
+    private final UserStatusCache userStatusCache;
+
+    public MetricsHandler(RequestExecutor requestExecutor, DatabaseService databaseService, ResponseCache responseCache,
+                          RateLimiter rateLimiter, UserStatusCache userStatusCache) {
+        this.requestExecutor = requestExecutor;
+        this.databaseService = databaseService;
+        this.responseCache = responseCache;
+        this.rateLimiter = rateLimiter;
+        this.userStatusCache = userStatusCache;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("execution", executionMetrics());
+        metrics.put("dbPool", poolMetrics());
+        metrics.put("statements", statementMetrics());
+        metrics.put("responseCache", responseCacheMetrics());
+        metrics.put("rateLimit", rateLimitMetrics());
+        metrics.put("userCache", userCacheMetrics());
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-store");
+        resp.getOutputStream().write(UtilityFunctions.convertToJson(metrics).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Execution mode, virtual threads in flight and pinned to their carrier, async stage pools
+    private Map<String, Object> executionMetrics() {
+        Map<String, Object> execution = new LinkedHashMap<>();
+        execution.put("mode", requestExecutor.getMode().name());
+        execution.put("inFlight", requestExecutor.getInFlight());
+        execution.put("pinnedCount", requestExecutor.getPinnedCount());
+        execution.put("pinnedMillis", requestExecutor.getPinnedMillis());
+        Map<String, Object> stages = new LinkedHashMap<>();
+        for (RequestExecutor.Stage stage : RequestExecutor.Stage.values()) {
+            Map<String, Object> pool = new LinkedHashMap<>();
+            pool.put("active", requestExecutor.getActive(stage));
+            pool.put("queued", requestExecutor.getQueued(stage));
+            pool.put("rejected", requestExecutor.getRejected(stage));
+            stages.put(stage.name(), pool);
+        }
+        execution.put("stages", stages);
+        return execution;
+    }
+
+    // Connection pool occupancy and how long callers waited to get a connection
+    private Map<String, Object> poolMetrics() {
+        PoolMetrics pool = databaseService.getPoolMetrics();
+        Map<String, Object> dbPool = new LinkedHashMap<>();
+        dbPool.put("active", pool.getActiveConnections());
+        dbPool.put("idle", pool.getIdleConnections());
+        dbPool.put("awaiting", pool.getThreadsAwaitingConnection());
+        dbPool.put("acquireCount", pool.getAcquireCount());
+        dbPool.put("averageWaitMillis", pool.getAverageWaitMillis());
+        dbPool.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(pool.getMaxWaitNanos()));
+        return dbPool;
+    }
+
+    // Per named query: prepares (one per pooled connection once warm) against executions
+    private Map<String, Object> statementMetrics() {
+        Map<String, Object> statements = new LinkedHashMap<>();
+        for (NamedQuery query : NamedQuery.values()) {
+            Map<String, Object> counts = new LinkedHashMap<>();
+            counts.put("prepared", databaseService.getPrepareCount(query));
+            counts.put("executed", databaseService.getExecuteCount(query));
+            statements.put(query.name(), counts);
+        }
+        return statements;
+    }
+
+    // Cached routes: hits, misses, requests that shared an identical in-flight call, entries held
+    private Map<String, Object> responseCacheMetrics() {
+        Map<String, Object> cache = new LinkedHashMap<>();
+        cache.put("hits", responseCache.getHitCount());
+        cache.put("misses", responseCache.getMissCount());
+        cache.put("coalesced", responseCache.getCoalescedCount());
+        cache.put("entries", responseCache.getEntryCount());
+        return cache;
+    }
+
+    // Requests answered 429 and the per-user, per-api_code buckets held
+    private Map<String, Object> rateLimitMetrics() {
+        Map<String, Object> rateLimit = new LinkedHashMap<>();
+        rateLimit.put("rejected", rateLimiter.getRejectedCount());
+        rateLimit.put("keys", rateLimiter.getKeyCount());
+        return rateLimit;
+    }
+
+    // User status lookups served from memory against those that went to the database
+    private Map<String, Object> userCacheMetrics() {
+        Map<String, Object> userCache = new LinkedHashMap<>();
+        userCache.put("hits", userStatusCache.getHitCount());
+        userCache.put("misses", userStatusCache.getMissCount());
+        userCache.put("evictions", userStatusCache.getEvictionCount());
+        userCache.put("entries", userStatusCache.size());
+        return userCache;
+    }
+}
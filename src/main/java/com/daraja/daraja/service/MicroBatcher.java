@@ -0,0 +1,228 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.service;
+
+import com.daraja.daraja.utility.BufferedResponse;
+import com.daraja.daraja.utility.UtilityFunctions;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces concurrent calls to the same api_code into one bulk BO call.
+ *
+ * <p>For a route with {@code batch_window_ms} and {@code batch_max_size} set in
+ * APIFETCHCONFIG, and a BO that declares the bulk method
+ * {@code methodName(List<Map<String, String>>, List<HttpServletResponse>)}, the first call
+ * opens a window for the api_code. Calls arriving during the window join it. The window
+ * is sent as one bulk call when it fills up or when the window time runs out, whichever
+ * comes first. Each caller waits for its own buffered response, so the BO can do one
+ * batched DB write instead of N.</p>
+ */
+@Component
+public class MicroBatcher {
+
+    private final ConcurrentHashMap<String, Window> openWindows = new ConcurrentHashMap<>();
+    private final LongAdder bulkCalls = new LongAdder();
+    private final LongAdder batchedRequests = new LongAdder();
+    private ScheduledExecutorService timer;
+    private ExecutorService flusher;
+
+    @PostConstruct
+    public void start() {
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "micro-batch-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Bulk BO calls block on the database, so each runs on its own virtual thread
+        flusher = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("micro-batch-", 0).factory());
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+        // Send what has been collected rather than leaving callers waiting
+        for (Window window : openWindows.values()) {
+            if (window.close()) {
+                openWindows.remove(window.route.getApiCode(), window);
+                flush(window);
+            }
+        }
+        flusher.shutdown();
+    }
+
+    // True if calls to this route can be coalesced: batching configured and a bulk method on the BO
+    public boolean supports(ApiRoute route) {
+        if (!route.isMicroBatched()) {
+            return false;
+        }
+        try {
+            return UtilityFunctions.hasBulkMethod(route.getClassName(), route.getMethodName());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds the call to the api_code's current window and waits until its bulk call has run,
+     * then writes this call's part of the result to resp.
+     *
+     * @throws Exception What the bulk call threw.
+     */
+    public void invoke(ApiRoute route, Map<String, String> requestParams, HttpServletResponse resp) throws Exception {
+        BufferedResponse buffered = new BufferedResponse(resp);
+        Call call = new Call(requestParams, buffered);
+        while (true) {
+            Window window = openWindows.get(route.getApiCode());
+            if (window == null) {
+                Window opened = new Window(route);
+                window = openWindows.putIfAbsent(route.getApiCode(), opened);
+                if (window == null) {
+                    window = opened;
+                    timer.schedule(() -> closeAndFlush(opened), route.getBatchWindowMs(), TimeUnit.MILLISECONDS);
+                }
+            }
+            int size = window.add(call);
+            if (size < 0) {
+                // Closed under us; the next window takes the call
+                continue;
+            }
+            if (size >= route.getBatchMaxSize()) {
+                closeAndFlush(window);
+            }
+            break;
+        }
+        try {
+            call.done.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        buffered.writeTo(resp);
+    }
+
+    private void closeAndFlush(Window window) {
+        if (window.close()) {
+            openWindows.remove(window.route.getApiCode(), window);
+            flusher.execute(() -> flush(window));
+        }
+    }
+
+    private void flush(Window window) {
+        List<Call> calls = window.calls;
+        if (calls.isEmpty()) {
+            // The timer closed the window before its first call joined
+            return;
+        }
+        List<Map<String, String>> params = new ArrayList<>(calls.size());
+        List<HttpServletResponse> responses = new ArrayList<>(calls.size());
+        for (Call call : calls) {
+            params.add(call.requestParams);
+            responses.add(call.response);
+        }
+        try {
+            UtilityFunctions.invokeBulkMethod(window.route.getClassName(), window.route.getMethodName(), params, responses);
+            bulkCalls.increment();
+            batchedRequests.add(calls.size());
+            calls.forEach(call -> call.done.complete(null));
+        } catch (Throwable t) {
+            calls.forEach(call -> call.done.completeExceptionally(t));
+        }
+    }
+
+    public long getBulkCalls() {
+        return bulkCalls.sum();
+    }
+
+    // Requests served through bulk calls; divided by getBulkCalls it is the average batch size
+    public long getBatchedRequests() {
+        return batchedRequests.sum();
+    }
+
+    private static final class Call {
+        final Map<String, String> requestParams;
+        final BufferedResponse response;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Call(Map<String, String> requestParams, BufferedResponse response) {
+            this.requestParams = requestParams;
+            this.response = response;
+        }
+    }
+
+    // Calls collected for one api_code; closed once, by the timer or by the call that fills it
+    private static final class Window {
+        final ApiRoute route;
+        final List<Call> calls = new ArrayList<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private boolean closed;
+
+        Window(ApiRoute route) {
+            this.route = route;
+        }
+
+        // New size of the window, or -1 if it is already closed
+        int add(Call call) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return -1;
+                }
+                calls.add(call);
+                return calls.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean close() {
+            lock.lock();
+            try {
+                if (closed) {
+                    return false;
+                }
+                closed = true;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package com.daraja.daraja.service;
+
+/**
+ * The fixed statements the gateway runs over and over. {@link DatabaseService} prepares
+ * each one once per pooled connection and keeps it, and resolves its column layout once,
+ * instead of re-preparing the SQL text on every call.
+ */
+public enum NamedQuery {
+
+    CONFIG_VERSION("SELECT MAX(config_version) AS config_version FROM API_CONFIG_VERSION"),
+    PRECONFIG("SELECT * FROM PUBLIC.PREAPICONFIG"),
+    FETCH_CONFIG("SELECT * FROM APIFETCHCONFIG"),
+    FETCH_PARAM("SELECT * FROM APIFETCHPARAM"),
+    ERROR_MESSAGES("SELECT error_code, error_message FROM error_messages"),
+    VALIDATION_RULES("SELECT * FROM ValidationRules"),
+    BUSINESS_VALIDATIONS("SELECT * FROM BusinessValidation"),
+    USER_STATUS("SELECT user_status, block_date FROM user_software_usage WHERE user_id = ?"),
+    USER_DETAILS("SELECT user_status, block_date, number_of_requests FROM user_software_usage WHERE user_id = ?"),
+    ADD_USER_REQUESTS("UPDATE user_software_usage SET number_of_requests = number_of_requests + ? WHERE user_id = ?");
+
+    static final int COUNT = values().length;
+
+    private final String sql;
+
+    NamedQuery(String sql) {
+        this.sql = sql;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package com.daraja.daraja.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-user, per-api_code request limit, checked before a request does any DB work.
+ *
+ * <p>A route with {@code rate_limit_per_minute} set in APIFETCHCONFIG lets each user make
+ * that many calls a minute, in bursts of up to {@code rate_limit_burst} calls (default:
+ * one second's worth). Each user and api_code has a token bucket kept as a single
+ * {@link AtomicLong} (the GCRA "theoretical arrival time"), updated with a CAS loop, so
+ * concurrent requests never take a lock.</p>
+ *
+ * <p>Buckets nobody has used for {@code daraja.rate-limit.idle-ms} are forgotten, and at
+ * most {@code daraja.rate-limit.max-keys} are kept. A forgotten bucket comes back full, so
+ * the idle time should be longer than the time the slowest bucket takes to refill.</p>
+ */
+@Component
+public class RateLimiter {
+
+    // Error code of a rejected call, sent with 429
+    public static final String ERROR_CODE = "ERR10013";
+
+    private final Cache<String, AtomicLong> buckets;
+    private final LongAdder rejected = new LongAdder();
+
+    public RateLimiter(@Value("${daraja.rate-limit.max-keys:1000000}") long maxKeys,
+                       @Value("${daraja.rate-limit.idle-ms:600000}") long idleMs) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Takes one call from the user's bucket for this route.
+     *
+     * @return false if the user is over the route's limit; always true for routes without one.
+     */
+    public boolean tryAcquire(ApiRoute route, String userId) {
+        if (!route.isRateLimited() || userId == null) {
+            // No user_id: validation rejects the request anyway
+            return true;
+        }
+        return tryAcquire(route, userId, System.nanoTime());
+    }
+
+    boolean tryAcquire(ApiRoute route, String userId, long now) {
+        AtomicLong bucket = buckets.get(route.getApiCode() + '|' + userId, key -> new AtomicLong(Long.MIN_VALUE));
+        long interval = TimeUnit.MINUTES.toNanos(1) / route.getRateLimitPerMinute();
+        // How far ahead of now the bucket may run: one interval per call of the burst
+        long limit = interval * route.getRateLimitBurst();
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + interval;
+            if (next - now > limit) {
+                rejected.increment();
+                return false;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    // Approximate number of buckets held
+    public long getKeyCount() {
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,191 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind counter for {@code user_software_usage.number_of_requests}.
+ *
+ * <p>Requests only bump an in-memory {@link LongAdder} per user. The deltas are written
+ * as one JDBC batch of {@code number_of_requests + delta} updates every
+ * {@code daraja.request-count.flush-interval-ms}, or sooner once
+ * {@code daraja.request-count.flush-threshold} requests are pending, and once more on
+ * shutdown. A crash loses at most the counts of one flush interval.</p>
+ */
+@Component
+public class RequestCounter {
+
+    private static volatile RequestCounter instance;
+
+    private final DatabaseService db;
+    private final long flushIntervalMs;
+    private final long flushThreshold;
+
+    // One adder per user with counts waiting to be written; drained entries are removed by
+    // flush, so the map only holds users seen since the last flush
+    private final ConcurrentHashMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+    private final LongAdder pendingTotal = new LongAdder();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private ScheduledExecutorService flusher;
+
+    public RequestCounter(DatabaseService db,
+                          @Value("${daraja.request-count.flush-interval-ms:1000}") long flushIntervalMs,
+                          @Value("${daraja.request-count.flush-threshold:1000}") long flushThreshold) {
+        this.db = db;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushThreshold = flushThreshold;
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "request-count-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        instance = this;
+    }
+
+    @PreDestroy
+    public void stop() {
+        instance = null;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    // Null outside a running application context
+    public static RequestCounter getInstance() {
+        return instance;
+    }
+
+    public void increment(String userId) {
+        add(userId, 1);
+    }
+
+    public void add(String userId, long requests) {
+        addPending(userId, requests);
+        pendingTotal.add(requests);
+        if (pendingTotal.sum() >= flushThreshold && flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down: stop() writes what is pending
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    private void addPending(String userId, long requests) {
+        while (true) {
+            LongAdder adder = pending.computeIfAbsent(userId, k -> new LongAdder());
+            adder.add(requests);
+            // A flush removes an adder only while it is drained; if that happened just before
+            // this add, the count landed in the removed adder and goes to its successor instead
+            if (pending.get(userId) == adder) {
+                return;
+            }
+        }
+    }
+
+    public long getPendingCount() {
+        return pendingTotal.sum();
+    }
+
+    // Users with counts not yet written
+    public int getPendingUserCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes all pending deltas in one batch. Deltas are taken out before the write so
+     * requests keep counting meanwhile, and put back if the batch fails.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<String> userIds = new ArrayList<>();
+            List<Long> deltas = new ArrayList<>();
+            List<List<Object>> parameterSets = new ArrayList<>();
+            for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+                long delta = entry.getValue().sum();
+                if (delta == 0) {
+                    pending.computeIfPresent(entry.getKey(), (k, adder) -> adder.sum() == 0 ? null : adder);
+                    continue;
+                }
+                // Subtract exactly what is written; concurrent increments stay in the adder
+                entry.getValue().add(-delta);
+                pendingTotal.add(-delta);
+                userIds.add(entry.getKey());
+                deltas.add(delta);
+                parameterSets.add(List.of(delta, entry.getKey()));
+            }
+            if (parameterSets.isEmpty()) {
+                return;
+            }
+            // One transaction: on failure no count was written, so all of them go back
+            BatchResult result = db.batchUpdate(NamedQuery.ADD_USER_REQUESTS, parameterSets, DatabaseService.DEFAULT_BATCH_SIZE);
+            if (!result.isSuccessful()) {
+                for (int i = 0; i < userIds.size(); i++) {
+                    addPending(userIds.get(i), deltas.get(i));
+                    pendingTotal.add(deltas.get(i));
+                }
+                return;
+            }
+            // Written: forget users that had no new requests meanwhile
+            for (String userId : userIds) {
+                pending.computeIfPresent(userId, (k, adder) -> adder.sum() == 0 ? null : adder);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+}
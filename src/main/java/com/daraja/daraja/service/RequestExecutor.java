@@ -0,0 +1,231 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which threads run {@link ApiHandler}'s request pipeline
+ * ({@code daraja.api.execution-mode}).
+ *
+ * <ul>
+ *   <li>{@code platform} (default): on the Tomcat connector thread, so concurrency is
+ *   capped by the connector's thread count.</li>
+ *   <li>{@code virtual}: each request is handed to its own virtual thread, and the
+ *   connector thread returns at once. A virtual thread blocked on JDBC releases its
+ *   carrier thread. Up to {@code daraja.api.virtual.max-in-flight} requests run at once,
+ *   and any beyond that get 503. Concurrent database work is still capped by the Hikari
+ *   pool size, which is configured separately. Carrier pinning is tracked through JFR.</li>
+ *   <li>{@code async}: {@link AsyncPipeline} reads the body with a ReadListener. It then runs
+ *   validation and the BO call as stages on two bounded thread pools
+ *   ({@code daraja.api.async.*}) and writes the response with a WriteListener. When a
+ *   stage's queue is full, the request gets 503 instead of waiting.</li>
+ * </ul>
+ */
+@Component
+public class RequestExecutor {
+
+    public enum Mode { PLATFORM, VIRTUAL, ASYNC }
+
+    // Async pipeline stages that run on their own bounded pool
+    public enum Stage { VALIDATE, INVOKE }
+
+    private final Mode mode;
+    private final int maxInFlight;
+    private final long pinnedThresholdMs;
+    private final Semaphore inFlight;
+    private final int validateThreads;
+    private final int validateQueue;
+    private final int invokeThreads;
+    private final int invokeQueue;
+    private final long asyncTimeoutMs;
+    private final Map<Stage, ThreadPoolExecutor> stageExecutors = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> stageRejections = new EnumMap<>(Stage.class);
+    private ExecutorService executor;
+    private ExecutorService batchExecutor;
+    private VirtualThreadPinningMonitor pinningMonitor;
+
+    public RequestExecutor(@Value("${daraja.api.execution-mode:platform}") String mode,
+                           @Value("${daraja.api.virtual.max-in-flight:10000}") int maxInFlight,
+                           @Value("${daraja.api.virtual.pinned-threshold-ms:20}") long pinnedThresholdMs,
+                           @Value("${daraja.api.async.validate-threads:16}") int validateThreads,
+                           @Value("${daraja.api.async.validate-queue:1000}") int validateQueue,
+                           @Value("${daraja.api.async.invoke-threads:32}") int invokeThreads,
+                           @Value("${daraja.api.async.invoke-queue:1000}") int invokeQueue,
+                           @Value("${daraja.api.async.timeout-ms:30000}") long asyncTimeoutMs) {
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.maxInFlight = maxInFlight;
+        this.pinnedThresholdMs = pinnedThresholdMs;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.validateThreads = validateThreads;
+        this.validateQueue = validateQueue;
+        this.invokeThreads = invokeThreads;
+        this.invokeQueue = invokeQueue;
+        this.asyncTimeoutMs = asyncTimeoutMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        // Parallel batch items run on virtual threads whatever the mode; BatchHandler caps them per batch
+        batchExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("api-batch-", 0).factory());
+        if (mode == Mode.VIRTUAL) {
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("api-vt-", 0).factory());
+            pinningMonitor = new VirtualThreadPinningMonitor(Duration.ofMillis(pinnedThresholdMs));
+            pinningMonitor.start();
+            System.out.println("API requests run on virtual threads (max in flight: " + maxInFlight + ")");
+        } else if (mode == Mode.ASYNC) {
+            addStage(Stage.VALIDATE, validateThreads, validateQueue);
+            addStage(Stage.INVOKE, invokeThreads, invokeQueue);
+            System.out.println("API requests run as async stages (validate: " + validateThreads
+                    + " threads, invoke: " + invokeThreads + " threads)");
+        }
+    }
+
+    private void addStage(Stage stage, int threads, int queueSize) {
+        LongAdder rejections = new LongAdder();
+        stageRejections.put(stage, rejections);
+        stageExecutors.put(stage, boundedPool(stage, threads, queueSize, rejections));
+    }
+
+    // Fixed-size pool with a bounded queue; a full queue rejects so the caller can answer 503
+    private static ThreadPoolExecutor boundedPool(Stage stage, int threads, int queueSize, LongAdder rejections) {
+        String prefix = "api-" + stage.name().toLowerCase(Locale.ROOT) + "-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> {
+                    rejections.increment();
+                    throw new RejectedExecutionException(stage + " stage queue is full");
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (batchExecutor != null) {
+            batchExecutor.shutdown();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (pinningMonitor != null) {
+            pinningMonitor.stop();
+        }
+        stageExecutors.values().forEach(ThreadPoolExecutor::shutdown);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Runs the task on its own virtual thread.
+     *
+     * @return false if max-in-flight requests are already running or the executor is shut down.
+     */
+    public boolean dispatch(Runnable task) {
+        if (!inFlight.tryAcquire()) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    inFlight.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            return false;
+        }
+    }
+
+    // Executor of an async stage; throws RejectedExecutionException when its queue is full
+    public Executor getStageExecutor(Stage stage) {
+        return stageExecutors.get(stage);
+    }
+
+    public ExecutorService getBatchExecutor() {
+        return batchExecutor;
+    }
+
+    // How long an async request may take before the container times it out (0 = never)
+    public long getAsyncTimeoutMillis() {
+        return asyncTimeoutMs;
+    }
+
+    public int getQueued(Stage stage) {
+        ThreadPoolExecutor pool = stageExecutors.get(stage);
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+    public int getActive(Stage stage) {
+        ThreadPoolExecutor pool = stageExecutors.get(stage);
+        return pool == null ? 0 : pool.getActiveCount();
+    }
+
+    // Requests answered with 503 because the stage's queue was full
+    public long getRejected(Stage stage) {
+        LongAdder rejections = stageRejections.get(stage);
+        return rejections == null ? 0 : rejections.sum();
+    }
+
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    // Pins longer than the threshold since startup; 0 when not in virtual mode
+    public long getPinnedCount() {
+        return pinningMonitor == null ? 0 : pinningMonitor.getPinnedCount();
+    }
+
+    public long getPinnedMillis() {
+        return pinningMonitor == null ? 0 : pinningMonitor.getPinnedNanos() / 1_000_000;
+    }
+}
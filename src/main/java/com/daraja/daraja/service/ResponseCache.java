@@ -0,0 +1,195 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package com.daraja.daraja.service;
+
+import com.daraja.daraja.utility.BufferedResponse;
+import com.daraja.daraja.utility.CachedResponse;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in cache of BO responses for read-only APIs.
+ *
+ * <p>A route with {@code cache_ttl_seconds} set in APIFETCHCONFIG has its responses kept
+ * for that long, keyed by the api_code and the sorted, validated request parameters
+ * (which include the user_id). The key is the full canonical text rather than a hash of
+ * it, so a collision can never serve one user's response to another. Entries hold the
+ * serialized response bytes and are evicted by W-TinyLFU once they add up to
+ * {@code daraja.response-cache.max-bytes}.</p>
+ *
+ * <p>Concurrent identical misses are coalesced: the first runs the BO, the others wait for
+ * its response. Only 2xx responses without cookies are kept; anything else is handed to
+ * the waiting callers and dropped.</p>
+ */
+@Component
+public class ResponseCache {
+
+    private final AsyncCache<String, Entry> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public ResponseCache(@Value("${daraja.response-cache.max-bytes:67108864}") long maxBytes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Entry entry) -> entry.cacheable ? 2 * key.length() + entry.response.getWeight() : 0)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.cacheable ? entry.ttlNanos : 0;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.cacheable ? entry.ttlNanos : 0;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .buildAsync();
+    }
+
+    public boolean supports(ApiRoute route) {
+        return route.getCacheTtlSeconds() > 0;
+    }
+
+    /**
+     * Sends the cached response for these parameters, or runs the loader (once, however many
+     * identical requests arrive meanwhile) and sends what it wrote.
+     */
+    public void invoke(ApiRoute route, Map<String, String> requestParams, HttpServletResponse resp, Loader loader)
+            throws IOException {
+        String key = key(route.getApiCode(), requestParams);
+        CompletableFuture<Entry> created = new CompletableFuture<>();
+        CompletableFuture<Entry> future = cache.get(key, (k, executor) -> created);
+
+        Entry entry;
+        if (future == created) {
+            misses.increment();
+            try {
+                BufferedResponse buffered = new BufferedResponse(resp);
+                loader.load(buffered);
+                entry = new Entry(buffered.toCachedResponse(), TimeUnit.SECONDS.toNanos(route.getCacheTtlSeconds()));
+                created.complete(entry);
+            } catch (IOException | RuntimeException | Error e) {
+                // Failed futures are dropped by the cache; waiting callers get the same failure
+                created.completeExceptionally(e);
+                throw e;
+            }
+        } else {
+            if (future.isDone()) {
+                hits.increment();
+            } else {
+                coalesced.increment();
+            }
+            entry = await(future);
+        }
+        entry.response.writeTo(resp);
+    }
+
+    private static Entry await(CompletableFuture<Entry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a coalesced response", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Coalesced request failed", e.getCause());
+        }
+    }
+
+    // api_code, then each parameter in name order as length-prefixed name and value
+    static String key(String apiCode, Map<String, String> requestParams) {
+        StringBuilder key = new StringBuilder(64).append(apiCode).append('|');
+        for (Map.Entry<String, String> param : new TreeMap<>(requestParams).entrySet()) {
+            String value = param.getValue();
+            key.append(param.getKey().length()).append(':').append(param.getKey());
+            if (value == null) {
+                key.append("-1:");
+            } else {
+                key.append(value.length()).append(':').append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    // Requests that waited for an identical in-flight request instead of calling the BO
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getEntryCount() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    /**
+     * Produces the response on a cache miss, e.g. by invoking the BO.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        void load(HttpServletResponse resp) throws IOException;
+    }
+
+    private static final class Entry {
+        final CachedResponse response;
+        final boolean cacheable;
+        final long ttlNanos;
+
+        Entry(CachedResponse response, long ttlNanos) {
+            this.response = response;
+            this.cacheable = response.isCacheable();
+            this.ttlNanos = ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package com.daraja.daraja.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, fully read result: one shared column header and an {@code Object[]} of
+ * values per row, instead of a map per row.
+ */
+public final class ResultRows {
+
+    static final ResultRows EMPTY = new ResultRows(new Columns(new String[0]), Collections.emptyList());
+
+    private final Columns columns;
+    private final List<Object[]> values;
+
+    ResultRows(Columns columns, List<Object[]> values) {
+        this.columns = columns;
+        this.values = values;
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    public int indexOf(String column) {
+        return columns.indexOf(column);
+    }
+
+    // Null when the value is null or the query has no such column
+    public Object getObject(int row, String column) {
+        int index = columns.indexOf(column);
+        return index < 0 ? null : values.get(row)[index];
+    }
+
+    // A view of one row; stable, unlike the rows passed to a RowMapper
+    public Row getRow(int row) {
+        return new Row(columns, values.get(row));
+    }
+
+    // Maps every row; rows the mapper returns null for are skipped
+    public <T> List<T> map(RowMapper<T> mapper) {
+        List<T> mapped = new ArrayList<>(values.size());
+        Row row = new Row(columns, null);
+        for (Object[] rowValues : values) {
+            row.reset(rowValues);
+            T value = mapper.map(row);
+            if (value != null) {
+                mapped.add(value);
+            }
+        }
+        return mapped;
+    }
+
+    public List<Map<String, Object>> toMaps() {
+        return map(Row::toMap);
+    }
+}
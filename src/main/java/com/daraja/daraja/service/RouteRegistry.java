@@ -0,0 +1,240 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory route table for {@link ApiHandler}.
+ *
+ * <p>PREAPICONFIG, APIFETCHCONFIG and APIFETCHPARAM are read in full once and joined
+ * into an immutable map keyed on the path segment after {@code /v1/}, so resolving a
+ * request is a single hash lookup instead of three queries.</p>
+ *
+ * <p>Configuration changes are picked up by polling the single-row API_CONFIG_VERSION
+ * table on a background thread. Whoever edits the routing tables bumps
+ * {@code config_version}; the next poll rebuilds the table off the request path and
+ * swaps it in atomically, so readers never lock. Without that table the routes are still
+ * loaded at startup, but later edits need a restart.</p>
+ */
+@Component
+public class RouteRegistry {
+
+
+    // Version reported when API_CONFIG_VERSION is missing, empty or cannot be read
+    public static final long UNKNOWN_VERSION = -1L;
+
+    private final DatabaseService db;
+    private final long refreshIntervalMs;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+    // Other config caches that follow the same version (error messages, validation plans, ...)
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService poller;
+    private volatile boolean versionReadFailed;
+
+    public RouteRegistry(DatabaseService db, @Value("${daraja.routes.refresh-interval-ms:30000}") long refreshIntervalMs) {
+        this.db = db;
+        this.refreshIntervalMs = refreshIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            reload(readConfigVersion());
+        } catch (SQLException e) {
+            // Every API answers ERR10001 until a poll manages to load the table
+            e.printStackTrace();
+        }
+        if (refreshIntervalMs > 0) {
+            poller = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "route-registry-poller");
+                t.setDaemon(true);
+                return t;
+            });
+            poller.scheduleWithFixedDelay(this::refreshIfChanged, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    // Returns null when no API is configured for the path
+    public ApiRoute resolve(String requestPath) {
+        return snapshot.get().routes.get(requestPath);
+    }
+
+    // Runs on the poller thread after each rebuild triggered by a version change
+    public void addReloadListener(Runnable listener) {
+        reloadListeners.add(listener);
+    }
+
+    public int size() {
+        return snapshot.get().routes.size();
+    }
+
+    public long getSnapshotVersion() {
+        return snapshot.get().version;
+    }
+
+    public long getLastRebuildMillis() {
+        return snapshot.get().rebuildMillis;
+    }
+
+    /**
+     * Rebuilds the route table if API_CONFIG_VERSION moved since the current snapshot, or
+     * if no snapshot has been loaded yet. Once one is loaded, an unknown version keeps it, as
+     * does a failed read of the routing tables; the reload listeners are skipped.
+     *
+     * @return true if a new snapshot was swapped in.
+     */
+    public boolean refreshIfChanged() {
+        try {
+            long version = readConfigVersion();
+            Snapshot current = snapshot.get();
+            if (current != Snapshot.EMPTY && (version == current.version || version == UNKNOWN_VERSION)) {
+                return false;
+            }
+            reload(version);
+            for (Runnable listener : reloadListeners) {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            // Keep serving the previous snapshot; the next poll will try again
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // Swaps in a new snapshot only if every table was read
+    private void reload(long version) throws SQLException {
+        long started = System.nanoTime();
+        Map<String, ApiRoute> routes = buildRoutes(db);
+        long rebuildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        snapshot.set(new Snapshot(version, routes, rebuildMillis));
+        System.out.println("Route table version " + version + " loaded with " + routes.size()
+                + " API(s) in " + rebuildMillis + " ms");
+    }
+
+    // UNKNOWN_VERSION if the table is empty or cannot be read, e.g. on a schema that predates it
+    private long readConfigVersion() {
+        List<Long> versions;
+        try {
+            versions = db.queryChecked(NamedQuery.CONFIG_VERSION, Collections.emptyList(), row -> {
+                Object version = row.getObject("config_version");
+                return version == null ? null : ((Number) version).longValue();
+            });
+        } catch (SQLException e) {
+            // Reported once, not on every poll
+            if (!versionReadFailed) {
+                versionReadFailed = true;
+                System.out.println("API_CONFIG_VERSION cannot be read, route changes need a restart: " + e.getMessage());
+            }
+            return UNKNOWN_VERSION;
+        }
+        versionReadFailed = false;
+        return versions.isEmpty() ? UNKNOWN_VERSION : versions.get(0);
+    }
+
+    static Map<String, ApiRoute> buildRoutes(DatabaseService db) throws SQLException {
+        // path -> api_code, skipping rows without a path
+        List<Map.Entry<String, String>> preconfig = db.queryChecked(NamedQuery.PRECONFIG, Collections.emptyList(), row -> {
+            Object path = row.getObject("path");
+            return path == null ? null : Map.entry(path.toString(), row.getString("api_code"));
+        });
+        ResultRows fetchConfig = db.queryRowsChecked(NamedQuery.FETCH_CONFIG, Collections.emptyList());
+        // api_code -> parameter, skipping rows without a parameter name
+        List<Map.Entry<String, ApiRoute.RequestParam>> fetchParams = db.queryChecked(NamedQuery.FETCH_PARAM, Collections.emptyList(), row -> {
+            Object name = row.getObject("request_param");
+            return name == null ? null : Map.entry(row.getString("api_code"),
+                    new ApiRoute.RequestParam(name.toString().trim(), row.getString("is_mandatory").equals("1")));
+        });
+
+        // APIFETCHCONFIG keeps the first row per api_code, as the per-request lookup did;
+        // only those rows become maps, since ApiRoute keeps the raw row
+        Map<String, Map<String, Object>> configByCode = new HashMap<>();
+        for (int i = 0; i < fetchConfig.size(); i++) {
+            Row row = fetchConfig.getRow(i);
+            String apiCode = row.getString("api_code");
+            if (!configByCode.containsKey(apiCode)) {
+                configByCode.put(apiCode, row.toMap());
+            }
+        }
+
+        Map<String, List<ApiRoute.RequestParam>> paramsByCode = new HashMap<>();
+        for (Map.Entry<String, ApiRoute.RequestParam> param : fetchParams) {
+            paramsByCode.computeIfAbsent(param.getKey(), k -> new ArrayList<>()).add(param.getValue());
+        }
+
+        Map<String, ApiRoute> table = new HashMap<>();
+        for (Map.Entry<String, String> entry : preconfig) {
+            String path = entry.getKey();
+            String apiCode = entry.getValue();
+            // A path without an APIFETCHCONFIG row is kept so the handler can still answer ERR10002
+            Map<String, Object> config = configByCode.getOrDefault(apiCode, Collections.emptyMap());
+            table.putIfAbsent(path, new ApiRoute(path, apiCode, config,
+                    paramsByCode.getOrDefault(apiCode, Collections.emptyList())));
+        }
+        return Map.copyOf(table);
+    }
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(UNKNOWN_VERSION, Collections.emptyMap(), 0L);
+
+        final long version;
+        final Map<String, ApiRoute> routes;
+        final long rebuildMillis;
+
+        Snapshot(long version, Map<String, ApiRoute> routes, long rebuildMillis) {
+            this.version = version;
+            this.routes = routes;
+            this.rebuildMillis = rebuildMillis;
+        }
+    }
+}
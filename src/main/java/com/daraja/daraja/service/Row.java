@@ -0,0 +1,103 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package com.daraja.daraja.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One result row: the query's shared {@link Columns} plus a column-indexed value array.
+ *
+ * <p>Rows handed to a {@link RowMapper} are reused for the next row, so a mapper copies
+ * out what it needs rather than keeping the row. Rows of {@link ResultRows} are stable.</p>
+ */
+public final class Row {
+
+    private final Columns columns;
+    private Object[] values;
+
+    Row(Columns columns, Object[] values) {
+        this.columns = columns;
+        this.values = values;
+    }
+
+    void reset(Object[] values) {
+        this.values = values;
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    public String getColumnName(int index) {
+        return columns.name(index);
+    }
+
+    // Index of a column by name, or -1 if the query has no such column
+    public int indexOf(String column) {
+        return columns.indexOf(column);
+    }
+
+    // Zero-based, unlike JDBC
+    public Object getObject(int index) {
+        return values[index];
+    }
+
+    // Null when the value is null or the query has no such column
+    public Object getObject(String column) {
+        int index = columns.indexOf(column);
+        return index < 0 ? null : values[index];
+    }
+
+    // Trimmed text of the value; "" when it is null or absent
+    public String getString(String column) {
+        Object value = getObject(column);
+        return value == null ? "" : value.toString().trim();
+    }
+
+    // defaultValue when the value is null, absent or not a number
+    public long getLong(String column, long defaultValue) {
+        Object value = getObject(column);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return value == null ? defaultValue : Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    // Column name -> value, as DatabaseService.executeQuery returns rows
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>(columns.size() * 4 / 3 + 1);
+        for (int i = 0; i < values.length; i++) {
+            map.put(columns.name(i), values[i]);
+        }
+        return map;
+    }
+}
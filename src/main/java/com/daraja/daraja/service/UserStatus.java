@@ -0,0 +1,65 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.service;
+
+import java.util.Map;
+
+/**
+ * The user_software_usage columns that decide whether a user may call an API.
+ */
+public final class UserStatus {
+
+    private final String userStatus;
+    private final boolean blockDateSet;
+
+    public UserStatus(String userStatus, boolean blockDateSet) {
+        this.userStatus = userStatus;
+        this.blockDateSet = blockDateSet;
+    }
+
+    // Row from SELECT user_status, block_date ... FROM user_software_usage
+    public static UserStatus fromRow(Map<String, Object> row) {
+        Object status = row.get("user_status");
+        return new UserStatus(status == null ? "" : status.toString().trim(), row.get("block_date") != null);
+    }
+
+    // Same columns, read from a DatabaseService row without building a map
+    public static UserStatus fromRow(Row row) {
+        return new UserStatus(row.getString("user_status"), row.getObject("block_date") != null);
+    }
+
+    public String getUserStatus() {
+        return userStatus;
+    }
+
+    public boolean isBlocked() {
+        return userStatus.equalsIgnoreCase("blocked") || blockDateSet;
+    }
+
+    public boolean isActive() {
+        return userStatus.equalsIgnoreCase("active") && !blockDateSet;
+    }
+}
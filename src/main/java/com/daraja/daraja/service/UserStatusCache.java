@@ -0,0 +1,113 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.service;
+
+import com.daraja.daraja.utility.UtilityFunctions;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Near-cache of user status for {@code validateUserIdAndProceed}.
+ *
+ * <p>Entries live for {@code daraja.user-cache.ttl-ms} after being loaded. Nothing in the
+ * server changes a user's status, so that bounds how long a block made in the database
+ * goes unnoticed. The cache holds at most
+ * {@code daraja.user-cache.max-size} users. Unknown users are not cached, so a new user
+ * is visible on their first request.</p>
+ *
+ * <p>Misses are loaded on a virtual thread of their own rather than inside the cache's map
+ * update, so a request on a virtual thread never stays pinned to its carrier for a DB round
+ * trip. Concurrent misses for the same user share one load.</p>
+ */
+@Component
+public class UserStatusCache {
+
+    private static volatile UserStatusCache instance;
+
+    private final AsyncCache<String, UserStatus> cache;
+    private final ExecutorService loader = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("user-cache-load-", 0).factory());
+
+    public UserStatusCache(@Value("${daraja.user-cache.ttl-ms:30000}") long ttlMs,
+                           @Value("${daraja.user-cache.max-size:100000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .maximumSize(maxSize)
+                .recordStats()
+                .executor(loader)
+                .buildAsync();
+    }
+
+    @PostConstruct
+    void register() {
+        instance = this;
+    }
+
+    @PreDestroy
+    void unregister() {
+        instance = null;
+        loader.shutdown();
+    }
+
+    // Null outside a running application context
+    public static UserStatusCache getInstance() {
+        return instance;
+    }
+
+    // Null when the user does not exist (or the lookup failed)
+    public UserStatus get(String userId) {
+        // The mapping function only starts the load; a null result is not kept
+        return cache.get(userId, (key, executor) -> CompletableFuture.supplyAsync(() -> load(key), executor)).join();
+    }
+
+    private static UserStatus load(String userId) {
+        return UtilityFunctions.getUserStatusById(userId);
+    }
+
+    public long getHitCount() {
+        return cache.synchronous().stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.synchronous().stats().missCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.synchronous().stats().evictionCount();
+    }
+
+    public long size() {
+        return cache.synchronous().estimatedSize();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.utility;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable outcome of one step of the request pipeline.
+ *
+ * <p>Each request carries its own result from step to step instead of sharing a
+ * mutable status map, so concurrent requests can never see each other's errors.
+ * Successful steps all return the shared {@link #SUCCESS} instance. The JSON body is
+ * serialized once when the result is created, so cached results (see
+ * {@link ErrorHandlingUtility}) are written out as ready-made bytes.</p>
+ *
+ * <p>In collect-all validation the result also carries every violation in an
+ * {@code errors} array; {@code message} then describes the first one.</p>
+ */
+public final class ApiResult {
+
+    public static final ApiResult SUCCESS = new ApiResult("SUCCESS", null, "No errors found.");
+
+    private final String status;
+    private final String errorCode;
+    private final String message;
+    private final List<String> errors;
+    private final byte[] json;
+
+    private ApiResult(String status, String errorCode, String message) {
+        this(status, errorCode, message, List.of());
+    }
+
+    private ApiResult(String status, String errorCode, String message, List<String> errors) {
+        this.status = status;
+        this.errorCode = errorCode;
+        this.message = message;
+        this.errors = List.copyOf(errors);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", status);
+        body.put("message", message);
+        if (!this.errors.isEmpty()) {
+            body.put("errors", this.errors);
+        }
+        this.json = UtilityFunctions.convertToJson(body).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static ApiResult error(String errorCode, String message) {
+        return new ApiResult("ERROR", errorCode, message);
+    }
+
+    public boolean isError() {
+        return status.equals("ERROR");
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    // Null for SUCCESS
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    // Every violation, in collect-all validation; empty otherwise
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    // Same message with extra detail appended, e.g. the name of a missing parameter
+    public ApiResult withDetail(String detail) {
+        return new ApiResult(status, errorCode, message + " -> " + detail, errors);
+    }
+
+    // Same result reporting the given violations in its errors array
+    public ApiResult withErrors(List<String> errors) {
+        return new ApiResult(status, errorCode, message, errors);
+    }
+
+    public String toJson() {
+        return new String(json, StandardCharsets.UTF_8);
+    }
+
+    // Serialized body; shared, so callers must not modify it
+    public byte[] toJsonBytes() {
+        return json;
+    }
+}
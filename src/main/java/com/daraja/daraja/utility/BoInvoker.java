@@ -0,0 +1,246 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.utility;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cached dynamic dispatch for BO/controller classes named in the API configuration.
+ *
+ * <p>Each class is resolved once: its no-arg constructor, its {@code setXxx(String)}
+ * setters and the BO methods called on it are bound to {@link MethodHandle}s adapted to
+ * a fixed erased type, so a request only pays for map lookups and an
+ * {@code invokeExact} instead of {@code Class.forName}, {@code getMethod} and
+ * {@code Method.invoke}. Methods are looked up with {@link Class#getMethod}, so the
+ * same public (including inherited) methods are found as before.</p>
+ */
+public final class BoInvoker {
+
+    private static final ConcurrentHashMap<String, BoInvoker> INVOKERS = new ConcurrentHashMap<>();
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, String.class);
+    private static final MethodType REQUEST_METHOD_TYPE = MethodType.methodType(void.class, Object.class, Object.class, Object.class);
+    private static final MethodType MAP_METHOD_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    // Marks a BO method that does not exist, so a missing method is not looked up again
+    private static final MethodHandle NO_METHOD = MethodHandles.zero(void.class);
+
+    private final Class<?> type;
+    private final MethodHandle constructor;
+    // Every public setXxx(String) of the class, by method name; read once, so names sent by
+    // clients never add entries
+    private final Map<String, MethodHandle> settersByName;
+    // Parameter name -> setter, for parameters that have one
+    private final ConcurrentHashMap<String, MethodHandle> settersByParam = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, MethodHandle> requestMethods = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, MethodHandle> mapMethods = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, MethodHandle> bulkMethods = new ConcurrentHashMap<>();
+
+    private BoInvoker(Class<?> type) throws ReflectiveOperationException {
+        this.type = type;
+        this.constructor = LOOKUP.findConstructor(type, MethodType.methodType(void.class)).asType(CONSTRUCTOR_TYPE);
+        Map<String, MethodHandle> setters = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (method.getName().startsWith("set") && method.getParameterCount() == 1
+                    && method.getParameterTypes()[0] == String.class) {
+                try {
+                    setters.putIfAbsent(method.getName(), LOOKUP.unreflect(method).asType(SETTER_TYPE));
+                } catch (IllegalAccessException e) {
+                    // e.g. inherited from a non-public class; reported as missing when used
+                }
+            }
+        }
+        this.settersByName = Map.copyOf(setters);
+    }
+
+    public static BoInvoker forClass(String className) throws Exception {
+        BoInvoker invoker = INVOKERS.get(className);
+        if (invoker == null) {
+            // Resolved outside computeIfAbsent so class loading never runs under a map lock
+            BoInvoker resolved = new BoInvoker(Class.forName(className));
+            invoker = INVOKERS.putIfAbsent(className, resolved);
+            if (invoker == null) {
+                invoker = resolved;
+            }
+        }
+        return invoker;
+    }
+
+    public Object newInstance() throws Exception {
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Calls {@code set<ParamName>(String)} for every parameter.
+     *
+     * @throws NoSuchMethodException if the class has no setter for one of the parameters.
+     */
+    public void setParameters(Object instance, Map<String, String> params) throws Exception {
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            MethodHandle setter = settersByParam.get(entry.getKey());
+            if (setter == null) {
+                setter = settersByName.get("set" + capitalize(entry.getKey()));
+                if (setter == null) {
+                    throw new NoSuchMethodException(type.getName() + ".set" + capitalize(entry.getKey()) + "(java.lang.String)");
+                }
+                settersByParam.putIfAbsent(entry.getKey(), setter);
+            }
+            invokeSetter(setter, instance, entry.getValue());
+        }
+    }
+
+    /**
+     * Calls the setter named in {@code setMethods} for each parameter that has a mapping.
+     *
+     * @throws NoSuchMethodException if a mapped setter does not exist on the class.
+     */
+    public void setParameters(Object instance, Map<String, String> params, Map<String, String> setMethods) throws Exception {
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            String setMethodName = setMethods.get(entry.getKey());
+            if (setMethodName == null) {
+                continue;
+            }
+            MethodHandle setter = settersByName.get(setMethodName);
+            if (setter == null) {
+                throw new NoSuchMethodException(type.getName() + "." + setMethodName + "(java.lang.String)");
+            }
+            invokeSetter(setter, instance, entry.getValue());
+        }
+    }
+
+    // Invokes methodName(Map, HttpServletResponse), the BO entry point used by ApiHandler
+    public void invoke(Object instance, String methodName, Map<String, String> params, HttpServletResponse resp) throws Exception {
+        MethodHandle method = requestMethods.get(methodName);
+        if (method == null) {
+            method = findMethod(requestMethods, methodName, methodName, REQUEST_METHOD_TYPE, Map.class, HttpServletResponse.class);
+        }
+        if (method == NO_METHOD) {
+            throw new NoSuchMethodException(type.getName() + "." + methodName + "(java.util.Map, jakarta.servlet.http.HttpServletResponse)");
+        }
+        try {
+            method.invokeExact(instance, (Object) params, (Object) resp);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    // True if the class has methodName(List, List), the bulk form of a request method
+    public boolean hasBulkMethod(String methodName) throws Exception {
+        return bulkMethod(methodName) != NO_METHOD;
+    }
+
+    /**
+     * Invokes methodName(List, List): one call for many requests, where the i-th response
+     * belongs to the i-th parameter set. Setters are not called, since each request has
+     * its own parameters.
+     */
+    public void invokeBulk(Object instance, String methodName, List<? extends Map<String, String>> params,
+                           List<? extends HttpServletResponse> responses) throws Exception {
+        MethodHandle method = bulkMethod(methodName);
+        if (method == NO_METHOD) {
+            throw new NoSuchMethodException(type.getName() + "." + methodName + "(java.util.List, java.util.List)");
+        }
+        try {
+            method.invokeExact(instance, (Object) params, (Object) responses);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private MethodHandle bulkMethod(String methodName) throws IllegalAccessException {
+        MethodHandle method = bulkMethods.get(methodName);
+        if (method == null) {
+            method = findMethod(bulkMethods, methodName, methodName, REQUEST_METHOD_TYPE, List.class, List.class);
+        }
+        return method;
+    }
+
+    // Invokes methodName(Map), the entry point used for lookup.xml BO mappings
+    public void invoke(Object instance, String methodName, Map<String, ?> params) throws Exception {
+        MethodHandle method = mapMethods.get(methodName);
+        if (method == null) {
+            method = findMethod(mapMethods, methodName, methodName, MAP_METHOD_TYPE, Map.class);
+        }
+        if (method == NO_METHOD) {
+            throw new NoSuchMethodException(type.getName() + "." + methodName + "(java.util.Map)");
+        }
+        try {
+            method.invokeExact(instance, (Object) params);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private MethodHandle findMethod(ConcurrentHashMap<String, MethodHandle> cache, String key, String methodName,
+                                    MethodType erasedType, Class<?>... parameterTypes) throws IllegalAccessException {
+        MethodHandle handle;
+        try {
+            Method method = type.getMethod(methodName, parameterTypes);
+            handle = LOOKUP.unreflect(method).asType(erasedType);
+        } catch (NoSuchMethodException e) {
+            handle = NO_METHOD;
+        }
+        MethodHandle existing = cache.putIfAbsent(key, handle);
+        return existing != null ? existing : handle;
+    }
+
+    private static void invokeSetter(MethodHandle setter, Object instance, String value) throws Exception {
+        try {
+            setter.invokeExact(instance, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static Exception rethrow(Throwable t) {
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t instanceof Exception) {
+            return (Exception) t;
+        }
+        return new Exception(t);
+    }
+
+    private static String capitalize(String str) {
+        return str.isEmpty() ? str : str.substring(0, 1).toUpperCase() + str.substring(1);
+    }
+}
@@ -0,0 +1,409 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.utility;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Response wrapper that records the status, headers and body in memory instead of sending
+ * them. A BO can then run on a worker thread, or several BOs in parallel for one request,
+ * and the output is written later (or not at all). The wrapped response is only read,
+ * for its initial content type and encoding. {@code sendError} is recorded, not sent.
+ *
+ * <p>The body is held in memory, so it is capped at {@code daraja.response.max-buffered-bytes}:
+ * a BO that writes more (e.g. a large {@code streamQueryAsJson} export behind the response
+ * cache, in a batch or in async mode) gets an IOException, its output is dropped and the
+ * response becomes a 507 error that nothing later overrides.</p>
+ */
+public class BufferedResponse extends HttpServletResponseWrapper {
+
+    // No constant for it in HttpServletResponse
+    private static final int SC_INSUFFICIENT_STORAGE = 507;
+
+    private static volatile long maxBodyBytes = 16L * 1024 * 1024;
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private boolean overflowed;
+    private int status = SC_OK;
+    private boolean error;
+    private String errorMessage;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final List<Cookie> cookies = new ArrayList<>();
+    private String contentType;
+    private String characterEncoding;
+
+    public BufferedResponse(HttpServletResponse response) {
+        super(response);
+        this.contentType = response.getContentType();
+        this.characterEncoding = response.getCharacterEncoding();
+    }
+
+    // Shared by every buffered response; checked on each write
+    public static void setMaxBodyBytes(long maxBytes) {
+        maxBodyBytes = maxBytes;
+    }
+
+    public static long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    private void append(byte[] bytes, int off, int len) throws IOException {
+        if (overflowed) {
+            throw new IOException("Buffered response already exceeded " + maxBodyBytes + " bytes");
+        }
+        if (body.size() + (long) len > maxBodyBytes) {
+            overflowed = true;
+            body.reset();
+            status = SC_INSUFFICIENT_STORAGE;
+            error = true;
+            errorMessage = "Response exceeds the " + maxBodyBytes + " byte limit for buffered responses";
+            throw new IOException(errorMessage);
+        }
+        body.write(bytes, off, len);
+    }
+
+    // Every body write goes through append, so the cap also covers the writer
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            append(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            append(bytes, off, len);
+        }
+    };
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        if (outputStream == null) {
+            outputStream = new ServletOutputStream() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The buffer is always ready, so the listener can write straight away
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    try {
+                        writeListener.onWritePossible();
+                    } catch (IOException e) {
+                        writeListener.onError(e);
+                    }
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    sink.write(b);
+                }
+
+                @Override
+                public void write(byte[] bytes, int off, int len) throws IOException {
+                    sink.write(bytes, off, len);
+                }
+            };
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (outputStream != null) {
+            throw new IllegalStateException("getOutputStream() has already been called");
+        }
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(sink, Charset.forName(getCharacterEncoding())));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (value == null) {
+            headers.remove(name);
+        } else {
+            List<String> values = new ArrayList<>(1);
+            values.add(value);
+            headers.put(name, values);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (value != null) {
+            headers.computeIfAbsent(name, k -> new ArrayList<>(1)).add(value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, formatDate(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, formatDate(date));
+    }
+
+    private static String formatDate(long date) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(date).atOffset(ZoneOffset.UTC));
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return values == null ? List.of() : List.copyOf(values);
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return List.copyOf(headers.keySet());
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        cookies.add(cookie);
+    }
+
+    @Override
+    public void setContentType(String type) {
+        this.contentType = type;
+        int charset = type == null ? -1 : type.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (charset >= 0) {
+            characterEncoding = type.substring(charset + "charset=".length()).trim();
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        if (writer == null) {
+            this.characterEncoding = charset;
+        }
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding == null ? "ISO-8859-1" : characterEncoding;
+    }
+
+    // The length is known once the body is complete
+    @Override
+    public void setContentLength(int len) {
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+    }
+
+    @Override
+    public void setLocale(Locale locale) {
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+        setHeader("Location", location);
+        this.status = SC_FOUND;
+    }
+
+    @Override
+    public void setStatus(int status) {
+        if (!overflowed) {
+            this.status = status;
+        }
+    }
+
+    @Override
+    public int getStatus() {
+        // Text still in the writer may yet overflow the cap and turn this into a 507
+        flushBuffer();
+        return status;
+    }
+
+    @Override
+    public void sendError(int status, String message) {
+        if (overflowed) {
+            // The BO's reaction to the overflow; the 507 stands
+            return;
+        }
+        this.status = status;
+        this.error = true;
+        this.errorMessage = message;
+    }
+
+    @Override
+    public void sendError(int status) {
+        sendError(status, null);
+    }
+
+    @Override
+    public void flushBuffer() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void resetBuffer() {
+        flushBuffer();
+        body.reset();
+    }
+
+    // Clears only what was recorded here; the wrapped response may already hold other output
+    @Override
+    public void reset() {
+        if (overflowed) {
+            return;
+        }
+        resetBuffer();
+        status = SC_OK;
+        error = false;
+        errorMessage = null;
+        headers.clear();
+        cookies.clear();
+        contentType = null;
+        characterEncoding = null;
+        outputStream = null;
+        writer = null;
+    }
+
+    // True once sendError was called; the body is then ignored
+    public boolean isError() {
+        flushBuffer();
+        return error;
+    }
+
+    public String getErrorMessage() {
+        flushBuffer();
+        return errorMessage;
+    }
+
+    public byte[] getBody() {
+        flushBuffer();
+        return body.toByteArray();
+    }
+
+    // Detached, immutable copy of everything recorded so far
+    public CachedResponse toCachedResponse() {
+        // Body first: flushing the writer may still overflow the cap and change the status
+        byte[] bytes = getBody();
+        return new CachedResponse(status, error, errorMessage, contentType, characterEncoding, headers, cookies, bytes);
+    }
+
+    // Applies the recorded content type, headers and cookies to a real response
+    public void copyHeadersTo(HttpServletResponse response) {
+        if (contentType != null) {
+            response.setContentType(contentType);
+        }
+        if (characterEncoding != null) {
+            response.setCharacterEncoding(characterEncoding);
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            List<String> values = header.getValue();
+            response.setHeader(header.getKey(), values.get(0));
+            for (int i = 1; i < values.size(); i++) {
+                response.addHeader(header.getKey(), values.get(i));
+            }
+        }
+        for (Cookie cookie : cookies) {
+            response.addCookie(cookie);
+        }
+    }
+
+    // Sends the recorded status, headers and body (or error) on a real response, blocking
+    public void writeTo(HttpServletResponse response) throws IOException {
+        byte[] bytes = getBody();
+        copyHeadersTo(response);
+        if (isError()) {
+            response.sendError(status, errorMessage);
+            return;
+        }
+        response.setStatus(status);
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+
+package com.daraja.daraja.utility;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable copy of what a BO wrote to a {@link BufferedResponse}: status, content type,
+ * headers, cookies and the serialized body bytes. It holds no reference to the request's
+ * response, so it can be kept (e.g. in the response cache) and sent any number of times.
+ */
+public final class CachedResponse {
+
+    private final int status;
+    private final boolean error;
+    private final String errorMessage;
+    private final String contentType;
+    private final String characterEncoding;
+    private final List<Map.Entry<String, List<String>>> headers;
+    private final List<Cookie> cookies;
+    private final byte[] body;
+
+    CachedResponse(int status, boolean error, String errorMessage, String contentType, String characterEncoding,
+                   Map<String, List<String>> headers, List<Cookie> cookies, byte[] body) {
+        this.status = status;
+        this.error = error;
+        this.errorMessage = errorMessage;
+        this.contentType = contentType;
+        this.characterEncoding = characterEncoding;
+        List<Map.Entry<String, List<String>>> copied = new ArrayList<>(headers.size());
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            copied.add(Map.entry(header.getKey(), List.copyOf(header.getValue())));
+        }
+        this.headers = List.copyOf(copied);
+        this.cookies = List.copyOf(cookies);
+        this.body = body;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    // True for a 2xx body that sets no cookies, so it is the same for every identical request
+    public boolean isCacheable() {
+        return !error && status >= 200 && status < 300 && cookies.isEmpty();
+    }
+
+    // Approximate heap footprint, for cache weighing
+    public int getWeight() {
+        int weight = 64 + body.length;
+        for (Map.Entry<String, List<String>> header : headers) {
+            weight += 2 * header.getKey().length();
+            for (String value : header.getValue()) {
+                weight += 2 * value.length();
+            }
+        }
+        return weight;
+    }
+
+    // Sends the recorded response on a real response, blocking; the body is never copied
+    public void writeTo(HttpServletResponse response) throws IOException {
+        if (contentType != null) {
+            response.setContentType(contentType);
+        }
+        if (characterEncoding != null) {
+            response.setCharacterEncoding(characterEncoding);
+        }
+        for (Map.Entry<String, List<String>> header : headers) {
+            List<String> values = header.getValue();
+            response.setHeader(header.getKey(), values.get(0));
+            for (int i = 1; i < values.size(); i++) {
+                response.addHeader(header.getKey(), values.get(i));
+            }
+        }
+        for (Cookie cookie : cookies) {
+            response.addCookie(cookie);
+        }
+        if (error) {
+            response.sendError(status, errorMessage);
+            return;
+        }
+        response.setStatus(status);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
@@ -27,79 +27,86 @@ SOFTWARE.
 package com.daraja.daraja.utility;
 
 import com.daraja.daraja.service.DatabaseService;
+import com.daraja.daraja.service.NamedQuery;
 
+import java.sql.SQLException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-
 
+/**
+ * Looks up error messages by code. Holds no per-request state: callers get back an
+ * immutable {@link ApiResult} and carry it themselves.
+ *
+ * <p>The error_messages table is loaded into an immutable catalog by {@link #refresh()}
+ * (at startup and whenever the API config version changes), with each error's JSON body
+ * serialized once up front, so answering a flood of bad requests costs no queries.</p>
+ */
 public class ErrorHandlingUtility {
 
-    private static DatabaseService dbservice;
-
     public static DatabaseService getDatabaseService() {
-        if (dbservice == null) {
-            dbservice = new DatabaseService();
-        }
-        return dbservice;
+        return DatabaseService.getInstance();
     }
 
     private static final ErrorHandlingUtility instance = new ErrorHandlingUtility();
-    private Map<String, Object> statusMap = new HashMap<>();
 
-    // Constructor initializes with no error
-    public ErrorHandlingUtility() {
-        statusMap.put("status", "SUCCESS");
-        statusMap.put("message", "No errors found.");
-    }
+    private volatile Map<String, ApiResult> catalog = Collections.emptyMap();
+    // Where refresh() reads error_messages; the shared DatabaseService until one is set
+    private volatile DatabaseService databaseService;
 
-    public static ErrorHandlingUtility getInstance() {
-        return instance;
+    private ErrorHandlingUtility() {
     }
 
-    // Method to set an error status
-    public void setError(String message) {
-        statusMap.put("status", "ERROR");
-        statusMap.put("message", message);
+    // A separate catalog over its own database, e.g. for tests
+    ErrorHandlingUtility(DatabaseService databaseService) {
+        this.databaseService = databaseService;
     }
 
-    // Method to check if an error exists
-    public boolean checkStatus() {
-        return statusMap.get("status").equals("ERROR");
+    public static ErrorHandlingUtility getInstance() {
+        return instance;
     }
 
-    // Method to return the error or success status map as a JSON string
-    public String getResponseJson() {
-        return UtilityFunctions.convertToJson(statusMap);
+    public void setDatabaseService(DatabaseService databaseService) {
+        this.databaseService = databaseService;
     }
 
-    // Optional method to clear error
-    public void clearError() {
-        statusMap.put("status", "SUCCESS");
-        statusMap.put("message", "No errors found.");
+    // Reloads error_messages; if the table cannot be read the previous catalog stays in place,
+    // while an empty table leaves an empty catalog
+    public void refresh() {
+        DatabaseService db = databaseService != null ? databaseService : getDatabaseService();
+        List<ApiResult> results;
+        try {
+            // Each row straight to its serialized error, skipping incomplete rows
+            results = db.queryChecked(NamedQuery.ERROR_MESSAGES, Collections.emptyList(), row -> {
+                Object code = row.getObject("error_code");
+                Object message = row.getObject("error_message");
+                return code == null || message == null ? null : ApiResult.error(code.toString().trim(), message.toString());
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return;
+        }
+        Map<String, ApiResult> loaded = new HashMap<>();
+        for (ApiResult result : results) {
+            loaded.put(result.getErrorCode(), result);
+        }
+        catalog = Map.copyOf(loaded);
+        System.out.println("Error catalog loaded with " + catalog.size() + " message(s)");
     }
 
-
-    public void setErrorByCode(String errorCode) {
-        String _query = "SELECT error_message FROM error_messages WHERE error_code = ?";
-
-        List<Map<String, Object>> results = getDatabaseService().executeQuery(_query, Collections.singletonList(errorCode));
-        if(!results.isEmpty()){
-            statusMap.put("status","ERROR");
-            statusMap.put("message", results.get(0).get("error_message"));
+    // Cached error result for a code from error_messages
+    public ApiResult errorByCode(String errorCode) {
+        ApiResult result = catalog.get(errorCode);
+        if (result == null) {
+            // Still report an error when the code has no message configured
+            return ApiResult.error(errorCode, "Request failed with error " + errorCode);
         }
+        return result;
     }
 
     public String  getErrorByCode(String errorCode) {
-        String _query = "SELECT error_message FROM error_messages WHERE error_code = ?";
-
-        List<Map<String, Object>> results = getDatabaseService().executeQuery(_query, Collections.singletonList(errorCode));
-        return results.get(0).get("error_message").toString();
+        return errorByCode(errorCode).getMessage();
     }
 
 }
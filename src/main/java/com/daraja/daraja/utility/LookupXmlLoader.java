@@ -25,48 +25,142 @@ SOFTWARE.
 
 package com.daraja.daraja.utility;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Index of the api_code mappings in lookup.xml.
+ *
+ * <p>The file is parsed once with a streaming StAX reader into an immutable map keyed by
+ * {@code api_code}, holding both the {@code <controller>} and {@code <bo>} entries. When
+ * lookup.xml is an exploded file on disk its modification time is checked at most once a
+ * second and the index is rebuilt when it changes.</p>
+ */
 public class LookupXmlLoader {
 
     private static final String XML_FILE_PATH = "/lookup.xml";
+    private static final long CHANGE_CHECK_INTERVAL_MS = 1000L;
+
+    private static volatile Map<String, ApiMapping> mappings = Collections.emptyMap();
+    private static volatile long loadedLastModified = -1L;
+    private static volatile long nextChangeCheck;
+    // A lock rather than synchronized, so a virtual thread reading the file does not pin its carrier
+    private static final ReentrantLock reloadLock = new ReentrantLock();
+
+    static {
+        reload();
+    }
 
     // TODO 1: Load and parse lookup.xml to get BO class and method based on api_code
     public static Map<String, String> getBoMapping(String apiCode) {
-        Map<String, String> boMapping = new HashMap<>();
+        ApiMapping mapping = getMapping(apiCode);
+        return mapping == null ? Collections.emptyMap() : mapping.getBoMapping();
+    }
+
+    // Returns null when lookup.xml has no <api> entry for the code
+    public static ApiMapping getMapping(String apiCode) {
+        reloadIfChanged();
+        return mappings.get(apiCode);
+    }
+
+    public static void reload() {
+        URL resource = LookupXmlLoader.class.getResource(XML_FILE_PATH);
+        if (resource == null) {
+            System.out.println("Sorry, unable to find " + XML_FILE_PATH);
+            return;
+        }
+        reloadLock.lock();
+        try (InputStream xmlStream = resource.openStream()) {
+            long lastModified = lastModified(resource);
+            mappings = parse(xmlStream);
+            loadedLastModified = lastModified;
+        } catch (Exception e) {
+            // Keep the previous index if the file is being edited or is malformed
+            e.printStackTrace();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private static void reloadIfChanged() {
+        long now = System.currentTimeMillis();
+        if (now < nextChangeCheck) {
+            return;
+        }
+        nextChangeCheck = now + CHANGE_CHECK_INTERVAL_MS;
+        URL resource = LookupXmlLoader.class.getResource(XML_FILE_PATH);
+        if (resource != null && lastModified(resource) != loadedLastModified) {
+            reload();
+        }
+    }
+
+    // Modification time for file: resources, -1 for anything packaged in a jar
+    private static long lastModified(URL resource) {
+        if (!"file".equals(resource.getProtocol())) {
+            return -1L;
+        }
         try {
-            InputStream xmlStream = LookupXmlLoader.class.getResourceAsStream(XML_FILE_PATH);
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.parse(xmlStream);
-
-            NodeList apiNodes = doc.getElementsByTagName("api");
-            for (int i = 0; i < apiNodes.getLength(); i++) {
-                Element apiElement = (Element) apiNodes.item(i);
-                String code = apiElement.getAttribute("api_code");
-                if (code.equals(apiCode)) {
-                    Element boElement = (Element) apiElement.getElementsByTagName("bo").item(0);
-                    if (boElement != null) {
-                        String className = boElement.getAttribute("class");
-                        String methodName = boElement.getAttribute("method");
-                        boMapping.put("className", className);
-                        boMapping.put("methodName", methodName);
+            return Files.getLastModifiedTime(Path.of(resource.toURI())).toMillis();
+        } catch (IOException | URISyntaxException e) {
+            return -1L;
+        }
+    }
+
+    static Map<String, ApiMapping> parse(InputStream xmlStream) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader reader = factory.createXMLStreamReader(xmlStream);
+
+        Map<String, ApiMapping> index = new HashMap<>();
+        try {
+            String apiCode = null;
+            String controllerClass = null;
+            String boClass = null;
+            String boMethod = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals("api")) {
+                        apiCode = attribute(reader, "api_code");
+                        controllerClass = null;
+                        boClass = null;
+                        boMethod = null;
+                    } else if (apiCode != null && name.equals("controller") && controllerClass == null) {
+                        controllerClass = attribute(reader, "class");
+                    } else if (apiCode != null && name.equals("bo") && boClass == null) {
+                        boClass = attribute(reader, "class");
+                        boMethod = attribute(reader, "method");
                     }
-                    break;
+                } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("api")) {
+                    // First <api> for a code wins, as the old linear scan did
+                    index.putIfAbsent(apiCode, new ApiMapping(apiCode, controllerClass, boClass, boMethod));
+                    apiCode = null;
                 }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+        } finally {
+            reader.close();
         }
-        return boMapping;
+        return Map.copyOf(index);
+    }
+
+    // Missing attributes read as "", matching Element.getAttribute
+    private static String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null ? "" : value;
     }
 
     // TODO 2: Invoke the BO method dynamically
@@ -79,9 +173,49 @@ public class LookupXmlLoader {
         String className = boMapping.get("className");
         String methodName = boMapping.get("methodName");
 
-        Class<?> clazz = Class.forName(className);
-        Object instance = clazz.getDeclaredConstructor().newInstance();
-        Method method = clazz.getMethod(methodName, Map.class);
-        method.invoke(instance, params);
+        BoInvoker invoker = BoInvoker.forClass(className);
+        invoker.invoke(invoker.newInstance(), methodName, params);
+    }
+
+    /**
+     * One {@code <api>} entry of lookup.xml.
+     */
+    public static final class ApiMapping {
+        private final String apiCode;
+        private final String controllerClass;
+        private final String boClass;
+        private final String boMethod;
+        private final Map<String, String> boMapping;
+
+        ApiMapping(String apiCode, String controllerClass, String boClass, String boMethod) {
+            this.apiCode = apiCode;
+            this.controllerClass = controllerClass;
+            this.boClass = boClass;
+            this.boMethod = boMethod;
+            this.boMapping = boClass == null ? Collections.emptyMap() : Map.of("className", boClass, "methodName", boMethod);
+        }
+
+        public String getApiCode() {
+            return apiCode;
+        }
+
+        // Null when the entry has no <controller>
+        public String getControllerClass() {
+            return controllerClass;
+        }
+
+        // Null when the entry has no <bo>
+        public String getBoClass() {
+            return boClass;
+        }
+
+        public String getBoMethod() {
+            return boMethod;
+        }
+
+        // {className, methodName} of the <bo>, or an empty map
+        public Map<String, String> getBoMapping() {
+            return boMapping;
+        }
     }
 }
@@ -0,0 +1,173 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.utility;
+
+import com.daraja.daraja.service.ApiRoute;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binds a JSON request body to request parameters by streaming it straight from the
+ * request {@link InputStream} with a shared {@link JsonFactory}.
+ *
+ * <p>Only the top-level fields the route declares in APIFETCHPARAM (plus
+ * {@code user_id}) are kept; everything else is skipped without being materialized.
+ * Scalar values are bound as their text, nested objects and arrays as their JSON.
+ * Bodies larger than {@code daraja.request.max-body-bytes} are rejected.</p>
+ */
+@Component
+public class RequestBodyBinder {
+
+    // Thread-safe once configured; parsers are cheap per-request views over it
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(JsonFactory.Feature.INTERN_FIELD_NAMES)
+            .build()
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    private final long maxBodyBytes;
+
+    public RequestBodyBinder(@Value("${daraja.request.max-body-bytes:1048576}") long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    public long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    public Map<String, String> bind(HttpServletRequest req, ApiRoute route) throws IOException {
+        if (req.getContentLengthLong() > maxBodyBytes) {
+            throw new IOException("Request body exceeds " + maxBodyBytes + " bytes");
+        }
+        return bind(req.getInputStream(), route.getBoundParameters());
+    }
+
+    /**
+     * Reads one JSON object from the stream.
+     *
+     * @param parameters names to keep, or null to keep every top-level field.
+     * @throws IOException if the body is too large, not valid JSON or not a JSON object.
+     */
+    public Map<String, String> bind(InputStream body, Set<String> parameters) throws IOException {
+        try (JsonParser parser = createParser(body, maxBodyBytes)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                // Empty body
+                return new HashMap<>();
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Request body must be a JSON object");
+            }
+            return bindObject(parser, parameters);
+        }
+    }
+
+    // Parser over a body capped at maxBytes, for callers with their own envelope (e.g. batches)
+    public JsonParser createParser(InputStream body, long maxBytes) throws IOException {
+        return JSON_FACTORY.createParser(new LimitedInputStream(body, maxBytes));
+    }
+
+    /**
+     * Binds the object the parser is positioned on (current token START_OBJECT) and leaves
+     * the parser on its END_OBJECT.
+     *
+     * @param parameters names to keep, or null to keep every field.
+     */
+    public Map<String, String> bindObject(JsonParser parser, Set<String> parameters) throws IOException {
+        Map<String, String> requestParams = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (parameters != null && !parameters.contains(name)) {
+                parser.skipChildren();
+            } else if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                requestParams.put(name, copyStructure(parser));
+            } else if (value == JsonToken.VALUE_NULL) {
+                requestParams.put(name, null);
+            } else {
+                requestParams.put(name, parser.getText());
+            }
+        }
+        return requestParams;
+    }
+
+    private static String copyStructure(JsonParser parser) throws IOException {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return json.toString();
+    }
+
+    // Fails the read once more than maxBytes have been consumed
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long count;
+
+        LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            int n = super.read(buffer, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws IOException {
+            count += n;
+            if (count > maxBytes) {
+                throw new IOException("Request body exceeds " + maxBytes + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+MIT License
+
+Copyright (c) 2024 Abdallah Galiya Tanzania Arusha
+Email abdallah.galiya@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package com.daraja.daraja.utility;
+
+/**
+ * Single-pass screen for SQL metacharacters and keywords in request values.
+ *
+ * <p>Flags an input that contains a quote ({@code '} or {@code "}), {@code ;},
+ * {@code <}, {@code >}, a comment opener ({@code --} or {@code /*}), or one of the
+ * {@link #KEYWORDS} as a whole word, case-insensitively. The input is walked once; each
+ * word is compared against the keywords of the same length as soon as it ends, so the
+ * cost is linear in the input with no allocation and no backtracking.</p>
+ */
+public final class SqlInjectionScreener {
+
+    static final String[] KEYWORDS = {
+            "SELECT", "INSERT", "UPDATE", "DELETE", "DROP", "CREATE", "ALTER", "EXEC",
+            "UNION", "WHERE", "OR", "AND", "BETWEEN", "LIKE", "HAVING", "JOIN"
+    };
+
+    // Keywords bucketed by length so a word is only compared with candidates it could equal
+    private static final char[][][] KEYWORDS_BY_LENGTH;
+    private static final int MAX_KEYWORD_LENGTH;
+
+    static {
+        int max = 0;
+        for (String keyword : KEYWORDS) {
+            max = Math.max(max, keyword.length());
+        }
+        MAX_KEYWORD_LENGTH = max;
+        KEYWORDS_BY_LENGTH = new char[max + 1][][];
+        for (int length = 0; length <= max; length++) {
+            int count = 0;
+            for (String keyword : KEYWORDS) {
+                if (keyword.length() == length) {
+                    count++;
+                }
+            }
+            KEYWORDS_BY_LENGTH[length] = new char[count][];
+            int i = 0;
+            for (String keyword : KEYWORDS) {
+                if (keyword.length() == length) {
+                    KEYWORDS_BY_LENGTH[length][i++] = keyword.toCharArray();
+                }
+            }
+        }
+    }
+
+    private SqlInjectionScreener() {
+    }
+
+    public static boolean containsSqlInjection(CharSequence input) {
+        if (input == null) {
+            return false;
+        }
+        int length = input.length();
+        int wordStart = -1;
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            if (isWordChar(c)) {
+                if (wordStart < 0) {
+                    wordStart = i;
+                }
+                continue;
+            }
+            if (wordStart >= 0) {
+                if (isKeyword(input, wordStart, i)) {
+                    return true;
+                }
+                wordStart = -1;
+            }
+            switch (c) {
+                case '\'':
+                case '"':
+                case ';':
+                case '<':
+                case '>':
+                    return true;
+                case '-':
+                    if (i + 1 < length && input.charAt(i + 1) == '-') {
+                        return true;
+                    }
+                    break;
+                case '/':
+                    if (i + 1 < length && input.charAt(i + 1) == '*') {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return wordStart >= 0 && isKeyword(input, wordStart, length);
+    }
+
+    private static boolean isKeyword(CharSequence input, int start, int end) {
+        int length = end - start;
+        if (length > MAX_KEYWORD_LENGTH) {
+            return false;
+        }
+        for (char[] keyword : KEYWORDS_BY_LENGTH[length]) {
+            int i = 0;
+            while (i < length && toUpperAscii(input.charAt(start + i)) == keyword[i]) {
+                i++;
+            }
+            if (i == length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Same notion of a word character as the \b boundary in java.util.regex
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static char toUpperAscii(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+}
@@ -25,45 +25,41 @@ SOFTWARE.
 
 package com.daraja.daraja.utility;
 
+import com.daraja.daraja.common.ValidationMode;
+import com.daraja.daraja.service.ApiRoute;
 import com.daraja.daraja.service.DatabaseService;
+import com.daraja.daraja.service.NamedQuery;
+import com.daraja.daraja.service.RequestCounter;
+import com.daraja.daraja.service.Row;
+import com.daraja.daraja.service.RowHandler;
+import com.daraja.daraja.service.UserStatus;
+import com.daraja.daraja.service.UserStatusCache;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import java.lang.reflect.Array;
-import java.lang.reflect.Method;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.io.BufferedReader;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 public class UtilityFunctions {
 
-    private static DatabaseService dbservice;
-    private static ErrorHandlingUtility errorUtil = ErrorHandlingUtility.getInstance();
+    private static final ErrorHandlingUtility errorUtil = ErrorHandlingUtility.getInstance();
 
     private UtilityFunctions() {
     }
 
     public static DatabaseService getDatabaseService() {
-        if (dbservice == null) {
-            dbservice = new DatabaseService();
-        }
-        return dbservice;
+        return DatabaseService.getInstance();
     }
 
-    private static final String SQL_INJECTION_PATTERN =
-            ".*(['\";--<>]|\\b(SELECT|INSERT|UPDATE|DELETE|DROP|CREATE|ALTER|EXEC|UNION|WHERE|OR|AND|BETWEEN|LIKE|HAVING|JOIN)\\b).*";
-
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
     // TODO 1: Fetch API configuration from the database based on api_code
     public static List<Map<String, Object>>  fetchApiConfig(String apiCode) {
         // Simulating database query
-        errorUtil.clearError();
         List<Map<String, Object>> apiFetchConfig = new ArrayList<>();
 
         if (!apiCode.trim().equalsIgnoreCase("")|| !(apiCode == null)) {
@@ -74,109 +70,77 @@ public class UtilityFunctions {
                 if(apiFetchConfig.get(0).get("post_method").toString().trim().toLowerCase().equalsIgnoreCase("post")){
                     //TODO this is post method we have to work on it
                 }
-            }else{
-                errorUtil.setErrorByCode("ERR10002");
             }
 
         }
         return apiFetchConfig;
     }
 
-    // TODO 2: Extract request parameters from the HttpServletRequest
-
-
-    public static Map<String, String> getRequestParameters(HttpServletRequest req) {
-        errorUtil.clearError();
-        Map<String, String> requestParams = new HashMap<>();
-
-        try {
-            StringBuilder jsonPayload = new StringBuilder();
-            BufferedReader reader = req.getReader();
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                jsonPayload.append(line);
-            }
-
-            // Assuming the request body is in JSON format
-            if (jsonPayload.length() > 0) {
-                ObjectMapper objectMapper = new ObjectMapper();
-                // Parse JSON into a map
-                requestParams = objectMapper.readValue(jsonPayload.toString(), Map.class);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            errorUtil.setErrorByCode("ERR10005");
-        }
-
-        return requestParams;
-    }
-
-
     // TODO 3: Validate request parameters based on procctlmpg configuration
-    public static boolean validateRequestParams(List<Map<String, Object>> apiFetchConfig, Map<String, String> requestParams) {
+    public static ApiResult validateRequestParams(ApiRoute route, Map<String, String> requestParams) {
         // Simulating a check for mandatory "element"
         //TODO to check for validation based on field validation class
-        errorUtil.clearError();
         try
         {
-            List<Map<String, Object>> apiFetchRequestParam = getRequestParam(apiFetchConfig.get(0).get("api_code").toString());
-            System.out.println(apiFetchConfig);
-            if(requestParams.containsKey("user_id")){
-                validateUserIdAndProceed(requestParams.get("user_id"));
-            }else{
-                errorUtil.setErrorByCode("ERR10009");
+            if (!requestParams.containsKey("user_id")) {
+                return errorUtil.errorByCode("ERR10009");
             }
 
-            if (errorUtil.checkStatus()) {
-                return false;
+            ApiResult userResult = validateUserIdAndProceed(requestParams.get("user_id"));
+            if (userResult.isError()) {
+                return userResult;
             }
 
-            if (apiFetchConfig.get(0).get("post_method").toString().trim().equalsIgnoreCase("post")) {
-                for (int i = 0; i < apiFetchRequestParam.size(); i++) {
-                    if (apiFetchRequestParam.get(i).get("is_mandatory").equals("1")) {
-                        if (!requestParams.containsKey(apiFetchRequestParam.get(i).get("request_param").toString())) {
-                            errorUtil.setError(errorUtil.getErrorByCode("ERR10004") +" -> "+
-                                    apiFetchRequestParam.get(i).get("request_param").toString());
-                            return false;
-                        }
+            return checkMandatoryParams(route, requestParams);
+        }catch (Exception e){
+            e.printStackTrace();
+            return errorUtil.errorByCode("ERR10006");
+        }
+    }
 
+    /**
+     * Mandatory APIFETCHPARAM parameters of POST routes; collect-all routes report every
+     * missing parameter, fail-fast routes the first.
+     */
+    public static ApiResult checkMandatoryParams(ApiRoute route, Map<String, String> requestParams) {
+        if (route.isPost()) {
+            boolean collectAll = route.getValidationMode() == ValidationMode.COLLECT_ALL;
+            List<String> missing = null;
+            for (ApiRoute.RequestParam param : route.getRequestParams()) {
+                if (param.isMandatory() && !requestParams.containsKey(param.getName())) {
+                    if (!collectAll) {
+                        return errorUtil.errorByCode("ERR10004").withDetail(param.getName());
+                    }
+                    if (missing == null) {
+                        missing = new ArrayList<>();
                     }
+                    missing.add(param.getName());
                 }
             }
-            //return true;
-        }catch (Exception e){
-            e.printStackTrace();
-            errorUtil.setErrorByCode("ERR10006");
-            return false;
+            if (missing != null) {
+                ApiResult missingResult = errorUtil.errorByCode("ERR10004");
+                List<String> errors = new ArrayList<>();
+                for (String name : missing) {
+                    errors.add(missingResult.getMessage() + " -> " + name);
+                }
+                return missingResult.withDetail(missing.get(0)).withErrors(errors);
+            }
         }
-        return true;
+        return ApiResult.SUCCESS;
     }
 
     // TODO: Method to dynamically set request parameters using 'set' methods from procctlmpg
     public static void setRequestParametersDynamically(String targetClassName, Map<String, String> requestParams) throws Exception {
-        // Load the target class
-        errorUtil.clearError();
-        Class<?> targetClass = Class.forName(targetClassName);
-        Object targetInstance = targetClass.getDeclaredConstructor().newInstance();
+        // Load the target class (resolved once and cached by BoInvoker)
+        BoInvoker invoker = BoInvoker.forClass(targetClassName);
+        Object targetInstance = invoker.newInstance();
 
         // Simulate fetching the 'set' methods from procctlmpg
         // For example, procctlmpg could return set methods like setAccountId(), setAmount(), etc.
         Map<String, String> setMethods = fetchSetMethodsFromProcctlmpg(targetClassName);
 
-        // Loop through each request parameter and invoke the corresponding set method dynamically
-        for (Map.Entry<String, String> param : requestParams.entrySet()) {
-            String paramName = param.getKey(); // e.g., "accountId"
-            String paramValue = param.getValue(); // e.g., "12345"
-
-            // Find the corresponding 'set' method
-            String setMethodName = setMethods.get(paramName); // e.g., "setAccountId"
-            if (setMethodName != null) {
-                // Invoke the set method
-                Method setMethod = targetClass.getMethod(setMethodName, String.class); // Assuming all params are String
-                setMethod.invoke(targetInstance, paramValue);
-            }
-        }
+        // Invoke the corresponding set method (e.g. "accountId" -> setAccountId) for each request parameter
+        invoker.setParameters(targetInstance, requestParams, setMethods);
     }
 
     // TODO: Simulate fetching set methods from procctlmpg table
@@ -187,34 +151,36 @@ public class UtilityFunctions {
         return Map.of("accountId", "setAccountId", "amount", "setAmount");
     }
 
-    // Helper function to capitalize the first letter (e.g., accountId -> setAccountId)
-    private static String capitalize(String str) {
-        return str.substring(0, 1).toUpperCase() + str.substring(1);
-    }
-
     // TODO 4: Fetch the set and get methods for request parameters from procctlmpg table
     // Simulating dynamic request parameter setting based on procctlmpg (config maintained in DB)
     public static void setRequestParamsDynamically(Object instance, Map<String, String> params) throws Exception {
         // Simulating fetching from procctlmpg for mandatory set methods
-        for (Map.Entry<String, String> entry : params.entrySet()) {
-            String methodName = "set" + capitalize(entry.getKey());
-            Method setterMethod = instance.getClass().getMethod(methodName, String.class);
-            setterMethod.invoke(instance, entry.getValue());
-        }
+        BoInvoker.forClass(instance.getClass().getName()).setParameters(instance, params);
     }
 
-    // TODO 5: Use reflection to invoke the method defined in procctlcfg
+    // TODO 5: Invoke the method defined in procctlcfg through the cached BoInvoker
     public static void invokeMethod(String className, String methodName, Map<String, String> params, HttpServletResponse resp) throws Exception {
         // Load the class and method dynamically
-        Class<?> clazz = Class.forName(className);
-        Object instance = clazz.getDeclaredConstructor().newInstance();
+        BoInvoker invoker = BoInvoker.forClass(className);
+        Object instance = invoker.newInstance();
 
         // Set request parameters dynamically using set methods
-        setRequestParamsDynamically(instance, params);
+        invoker.setParameters(instance, params);
 
         // Invoke the specified method with request parameters
-        Method method = clazz.getMethod(methodName, Map.class, HttpServletResponse.class);
-        method.invoke(instance, params, resp);
+        invoker.invoke(instance, methodName, params, resp);
+    }
+
+    // True if the BO also declares methodName(List, List) for many requests in one call
+    public static boolean hasBulkMethod(String className, String methodName) throws Exception {
+        return BoInvoker.forClass(className).hasBulkMethod(methodName);
+    }
+
+    // One bulk call on a fresh BO instance; responses.get(i) answers params.get(i)
+    public static void invokeBulkMethod(String className, String methodName, List<Map<String, String>> params,
+                                        List<HttpServletResponse> responses) throws Exception {
+        BoInvoker invoker = BoInvoker.forClass(className);
+        invoker.invokeBulk(invoker.newInstance(), methodName, params, responses);
     }
 
 
@@ -285,6 +251,85 @@ public class UtilityFunctions {
     }
 
 
+    /**
+     * Streams a query's rows into the response as a JSON array of objects (column name ->
+     * value), reading them through a cursor instead of a list, so a BO can export any
+     * number of rows with flat memory. The body goes out chunked: the first row is flushed
+     * at once, the rest as the output buffer fills.
+     *
+     * <p>If the query fails before anything was sent the response becomes a 500. Once rows
+     * have gone out the status cannot change, so an IOException is thrown and the array is
+     * left unterminated; the client sees a truncated body rather than a short, valid one.</p>
+     *
+     * <p>Memory only stays flat when resp is the real response (platform or virtual mode,
+     * API not cached or micro-batched). Elsewhere resp is a {@link BufferedResponse}, so the
+     * whole array is held in memory and an export over
+     * {@code daraja.response.max-buffered-bytes} fails with 507.</p>
+     *
+     * @return The number of rows written.
+     */
+    public static long streamQueryAsJson(String query, List<Object> parameters, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(resp.getOutputStream())
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        long count;
+        try {
+            generator.writeStartArray();
+            count = getDatabaseService().forEachRow(query, parameters, DatabaseService.DEFAULT_FETCH_SIZE,
+                    new JsonRowWriter(generator));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (!resp.isCommitted()) {
+                resp.resetBuffer();
+                resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error reading data");
+                return 0;
+            }
+            throw new IOException("Query failed while streaming the response", e);
+        }
+        generator.writeEndArray();
+        generator.close();
+        return count;
+    }
+
+    // Writes each row as a JSON object; flushes after the first so the client sees data early
+    private static final class JsonRowWriter implements RowHandler {
+        private final JsonGenerator generator;
+        private boolean flushed;
+
+        JsonRowWriter(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void handle(Row row) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < row.getColumnCount(); i++) {
+                generator.writeFieldName(row.getColumnName(i));
+                writeValue(row.getObject(i));
+            }
+            generator.writeEndObject();
+            if (!flushed) {
+                generator.flush();
+                flushed = true;
+            }
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                generator.writeNull();
+            } else if (value instanceof String) {
+                generator.writeString((String) value);
+            } else if (value instanceof Number || value instanceof Boolean || value instanceof byte[]) {
+                generator.writeObject(value);
+            } else {
+                // Dates, times and driver-specific types as their text, e.g. 2024-01-31
+                generator.writeString(value.toString());
+            }
+        }
+    }
+
     public static String convertToJson(Object object) {
         try {
             return objectMapper.writeValueAsString(object);
@@ -299,91 +344,87 @@ public class UtilityFunctions {
 
 
 
+    // Linear-time screen, see SqlInjectionScreener for what is flagged
     public static boolean containsSqlInjection(String input) {
-        if (input == null || input.isEmpty()) {
-            return false; // No SQL injection possible
-        }
-        try {
-            Pattern pattern = Pattern.compile(SQL_INJECTION_PATTERN, Pattern.CASE_INSENSITIVE);
-            return pattern.matcher(input).matches();
-        } catch (PatternSyntaxException e) {
-           // e.printStackTrace(); // Log the error for debugging
-            return false; // Default to safe if regex fails
-        }
+        return SqlInjectionScreener.containsSqlInjection(input);
     }
 
 
-    public static boolean validateUserIdAndProceed(String userId) throws Exception {
-        errorUtil.clearError();
+    public static ApiResult validateUserIdAndProceed(String userId) {
+        return validateUserIdAndProceed(userId, 1);
+    }
+
+    // Validates the user once and counts requestCount requests, e.g. every item of a batch
+    public static ApiResult validateUserIdAndProceed(String userId, int requestCount) {
         if (userId == null || userId.trim().isEmpty()) {
-            errorUtil.setErrorByCode("ERR10007");
-            return false;
+            return errorUtil.errorByCode("ERR10007");
         }
 
         if (containsSqlInjection(userId)) {
-            errorUtil.setErrorByCode("ERR10008");
-            return false;
+            return errorUtil.errorByCode("ERR10008");
         }
 
-        if (errorUtil.checkStatus()) {
-            return false;
-        }
+        UserStatus user = loadUserStatus(userId);
 
-        List<Map<String, Object>> userDetails = getUserDetailsById(userId);
-
-        if (userDetails == null || userDetails.isEmpty()) {
-            errorUtil.setErrorByCode("ERR10009");
-            return false;
+        if (user == null) {
+            return errorUtil.errorByCode("ERR10009");
         }
 
-        if (errorUtil.checkStatus()) {
-            return false;
+        if (user.isBlocked()) {
+            return errorUtil.errorByCode("ERR10010");
         }
 
-        Map<String, Object> userDetail = userDetails.get(0);
-        String userStatus = userDetail.get("user_status").toString();
-        Object blockDate = userDetail.get("block_date");
-
-        if (userStatus.equalsIgnoreCase("blocked") || blockDate != null) {
-            errorUtil.setErrorByCode("ERR10010");
-            return false;
+        if (user.isActive()) {
+            // Update the number_of_requests
+            return updateUserRequestCount(userId, requestCount);
         }
+        return errorUtil.errorByCode("ERR10010");
+    }
 
-        if (errorUtil.checkStatus()) {
-            return false;
+    // Served from UserStatusCache when the application is running
+    private static UserStatus loadUserStatus(String userId) {
+        UserStatusCache cache = UserStatusCache.getInstance();
+        if (cache != null) {
+            return cache.get(userId);
         }
-        if (userStatus.toLowerCase().trim().equalsIgnoreCase("active") && blockDate == null) {
-            // Update the number_of_requests
-            updateUserRequestCount(userId);
-            if (errorUtil.checkStatus()) {
-                return  false;
-            }
+        return getUserStatusById(userId);
+    }
 
-        } else {
-            errorUtil.setError("ERR10010");
-            return false;
-        }
-        return true;
+    // Counted in memory and written in batches by RequestCounter when the application is running
+    public static ApiResult updateUserRequestCount(String userId) {
+        return updateUserRequestCount(userId, 1);
     }
 
-    public static void updateUserRequestCount(String userId) throws  SQLException{
-        String query = "UPDATE user_software_usage SET number_of_requests = number_of_requests + 1 WHERE user_id = ?";
+    public static ApiResult updateUserRequestCount(String userId, int requestCount) {
+        RequestCounter counter = RequestCounter.getInstance();
+        if (counter != null) {
+            counter.add(userId, requestCount);
+            return ApiResult.SUCCESS;
+        }
         try {
-            getDatabaseService().executeUpdate(query, Collections.singletonList(userId));
+            getDatabaseService().executeUpdate(NamedQuery.ADD_USER_REQUESTS, Arrays.asList(requestCount, userId));
         }catch (Exception e){
             e.printStackTrace();
-            errorUtil.setErrorByCode("ERR10011");
+            return errorUtil.errorByCode("ERR10011");
+        }
+        return ApiResult.SUCCESS;
+    }
+
+    // Null when the user does not exist (or the lookup failed); mapped straight from the row
+    public static UserStatus getUserStatusById(String userId) {
+        if (containsSqlInjection(userId)) {
+            return null;
         }
+        List<UserStatus> users = getDatabaseService().query(NamedQuery.USER_STATUS, Collections.singletonList(userId), UserStatus::fromRow);
+        return users.isEmpty() ? null : users.get(0);
     }
 
+    // Callers screen userId with containsSqlInjection before getting here
     public static List<Map<String, Object>> getUserDetailsById(String userId) {
         if(!containsSqlInjection(userId)) {
-            String _query = "SELECT user_status, block_date, number_of_requests FROM user_software_usage WHERE user_id = ?";
-            return getDatabaseService().executeQuery(_query, Collections.singletonList(userId));
-        }else {
-            errorUtil.setErrorByCode("ERR10008");
-            return Collections.emptyList();
+            return getDatabaseService().executeQuery(NamedQuery.USER_DETAILS, Collections.singletonList(userId));
         }
+        return Collections.emptyList();
     }
 
 
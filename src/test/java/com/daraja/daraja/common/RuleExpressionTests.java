@@ -0,0 +1,75 @@
+package com.daraja.daraja.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleExpressionTests {
+
+    @Test
+    void keepsTheValueOpThresholdForm() {
+        RuleExpression rule = RuleExpression.compile("value > 100");
+        assertTrue(rule.test("100.5"));
+        assertTrue(rule.test(101));
+        assertFalse(rule.test("100"));
+        assertFalse(rule.test("abc"));
+        assertFalse(rule.test(null));
+        assertTrue(RuleExpression.compile("value = 7").test(" 7.0 "));
+        assertTrue(RuleExpression.compile("value < -2.5").test("-3"));
+    }
+
+    @Test
+    void combinesPredicates() {
+        RuleExpression rule = RuleExpression.compile("amount between 1 and 5000 and not (amount = 13 or amount in (42, 99))");
+        assertTrue(rule.test("1"));
+        assertTrue(rule.test("5000"));
+        assertFalse(rule.test("13"));
+        assertFalse(rule.test("99"));
+        assertFalse(rule.test("5000.01"));
+        assertFalse(rule.test("x"));
+    }
+
+    @Test
+    void checksLengthPatternsAndSets() {
+        assertTrue(RuleExpression.compile("len(name) <= 3").test("abc"));
+        assertFalse(RuleExpression.compile("len(name) <= 3").test("abcd"));
+        assertTrue(RuleExpression.compile("code matches '^[A-Z]{3}$'").test("TZS"));
+        assertFalse(RuleExpression.compile("code matches '^[A-Z]{3}$'").test("tzs"));
+        RuleExpression currency = RuleExpression.compile("currency in ('TZS', \"KES\") || currency == 'USD'");
+        assertTrue(currency.test("KES"));
+        assertTrue(currency.test("USD"));
+        assertFalse(currency.test("EUR"));
+        assertTrue(RuleExpression.compile("currency not in ('EUR')").test("TZS"));
+        assertTrue(RuleExpression.compile("status != 'closed'").test("open"));
+    }
+
+    @Test
+    void testsNumberValuesWithAndWithoutText() {
+        assertTrue(RuleExpression.compile("amount between 1 and 5000").test(250L));
+        assertFalse(RuleExpression.compile("amount in (42, 99)").test(13));
+        assertTrue(RuleExpression.compile("len(amount) = 3").test(250));
+        assertTrue(RuleExpression.compile("amount matches '^2.*'").test(250));
+        assertTrue(RuleExpression.compile("amount in ('250')").test(250));
+    }
+
+    @Test
+    void parsesNumbersLikeDouble() {
+        String[] inputs = {"0", "-0.05", "123456789.123456", "1e3", "007", ".5", "12345678901234567890"};
+        for (String input : inputs) {
+            assertEquals(Double.parseDouble(input), RuleExpression.parseNumber(input), input);
+        }
+        assertTrue(Double.isNaN(RuleExpression.parseNumber("1.2.3")));
+        assertTrue(Double.isNaN(RuleExpression.parseNumber("-")));
+        assertTrue(Double.isNaN(RuleExpression.parseNumber("")));
+    }
+
+    @Test
+    void rejectsMalformedRules() {
+        assertThrows(IllegalArgumentException.class, () -> RuleExpression.compile("value >"));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpression.compile("value > 'abc'"));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpression.compile("value between 1 5"));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpression.compile("value matches '('"));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpression.compile("(value > 1"));
+        assertThrows(IllegalArgumentException.class, () -> RuleExpression.compile(""));
+    }
+}
@@ -0,0 +1,41 @@
+package com.daraja.daraja.common;
+
+import com.daraja.daraja.service.DatabaseService;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidationEngineTests {
+
+    @Test
+    void refreshTellsAnEmptyTableFromAFailedRead() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:rules;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        DatabaseService db = new DatabaseService(dataSource);
+        db.executeUpdate("DROP ALL OBJECTS", Collections.emptyList());
+        db.executeUpdate("CREATE TABLE ValidationRules (id VARCHAR(10), api_code VARCHAR(10), parameter_name VARCHAR(50), business_validation_code VARCHAR(50), data_validation_code VARCHAR(50), common_validation_code VARCHAR(50))", Collections.emptyList());
+        db.executeUpdate("CREATE TABLE BusinessValidation (id VARCHAR(10), validation_code VARCHAR(100), validation_description VARCHAR(100))", Collections.emptyList());
+        db.executeUpdate("INSERT INTO ValidationRules VALUES ('1', '10001', 'amount', null, 'numeric', null)", Collections.emptyList());
+
+        ValidationEngine engine = new ValidationEngine(db);
+        engine.refresh();
+        assertThrows(ValidationException.class, () -> engine.validate("10001", Map.of("amount", "x")));
+
+        // Unreadable table: the plans stay
+        db.executeUpdate("ALTER TABLE ValidationRules RENAME TO ValidationRulesOld", Collections.emptyList());
+        engine.refresh();
+        assertNotNull(engine.getPlan("10001"));
+
+        // Rules deleted on purpose: nothing is checked any more
+        db.executeUpdate("ALTER TABLE ValidationRulesOld RENAME TO ValidationRules", Collections.emptyList());
+        db.executeUpdate("DELETE FROM ValidationRules", Collections.emptyList());
+        engine.refresh();
+        assertNull(engine.getPlan("10001"));
+        engine.validate("10001", Map.of("amount", "x"));
+    }
+}
@@ -0,0 +1,48 @@
+package com.daraja.daraja.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidationPlanTests {
+
+    private static ValidationPlan plan() {
+        Map<String, List<ValidationCheck>> checks = new LinkedHashMap<>();
+        checks.put("name", List.of(CommonValidation.resolve("not_blank", "name", Map.of())));
+        checks.put("amount", List.of(
+                DataTypeValidation.resolve("numeric", "amount", Map.of()),
+                CommonValidation.resolve("is_positive", "amount", Map.of())));
+        return new ValidationPlan(checks, 0);
+    }
+
+    @Test
+    void collectAllReportsEveryViolation() {
+        ValidationPlan plan = plan();
+        assertEquals(List.of("name must not be blank", "amount must be a number", "amount must be greater than zero"),
+                plan.validateAll(Map.of("name", " ", "amount", "x")));
+        assertEquals(List.of(), plan.validateAll(Map.of("name", "a", "amount", "5")));
+        // Absent parameters are left to the mandatory check
+        assertEquals(List.of(), plan.validateAll(Map.of()));
+    }
+
+    @Test
+    void failFastRunsFrequentlyFailingChecksFirst() {
+        ValidationPlan plan = plan();
+        ValidationException first = assertThrows(ValidationException.class,
+                () -> plan.validate(Map.of("name", " ", "amount", "-1")));
+        assertEquals("name must not be blank", first.getMessage());
+
+        for (int i = 0; i < 1000; i++) {
+            assertThrows(ValidationException.class, () -> plan.validate(Map.of("name", "a", "amount", "-1")));
+        }
+        plan.reorder();
+        assertEquals("amount: amount must be greater than zero", plan.getFailFastOrder().get(0));
+        ValidationException reordered = assertThrows(ValidationException.class,
+                () -> plan.validate(Map.of("name", " ", "amount", "-1")));
+        assertEquals("amount must be greater than zero", reordered.getMessage());
+    }
+}
@@ -0,0 +1,71 @@
+package com.daraja.daraja.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidatorRegistryTests {
+
+    private static ValidationCheck dataType(String code) {
+        return DataTypeValidation.resolve(code, "field", Map.of());
+    }
+
+    private static ValidationCheck common(String code, Map<String, Object> rule) {
+        return CommonValidation.resolve(code, "field", rule);
+    }
+
+    @Test
+    void resolvesDataTypeCodes() {
+        assertTrue(dataType("NUMERIC").test("-12.5"));
+        assertTrue(dataType("numeric").test(3));
+        assertFalse(dataType("numeric").test("12a"));
+        assertTrue(dataType("integer").test("+42"));
+        assertFalse(dataType("integer").test("4.2"));
+        assertTrue(dataType("boolean").test("TRUE"));
+        assertTrue(dataType("date").test("2024-02-29"));
+        assertFalse(dataType("date").test("2023-02-29"));
+        assertFalse(dataType("date").test("2024-13-01"));
+        assertTrue(dataType("datetime").test("2024-01-31T23:59:59Z"));
+        assertTrue(dataType("datetime").test("2024-01-31 08:15"));
+        assertFalse(dataType("time").test("24:00"));
+        assertFalse(dataType("alpha").test("abc1"));
+        assertFalse(dataType("numeric").test(null));
+        assertNull(dataType("no_such_code"));
+    }
+
+    @Test
+    void acceptsBaselineDataValidationCodes() {
+        assertTrue(dataType("is_not_negative").test("0"));
+        assertFalse(dataType("IS_NOT_NEGATIVE").test("-1"));
+        ValidationCheck length = DataTypeValidation.resolve("check_length", "field", Map.of("min_length", "1", "max_length", "3"));
+        assertTrue(length.test("abc"));
+        assertFalse(length.test("abcd"));
+    }
+
+    @Test
+    void resolvesCommonCodes() {
+        assertTrue(common("is_not_negative", Map.of()).test("0"));
+        assertFalse(common("is_not_negative", Map.of()).test("-1"));
+        assertFalse(common("is_not_negative", Map.of()).test("x"));
+        assertFalse(common("is_positive", Map.of()).test(0));
+        assertFalse(common("not_blank", Map.of()).test("  "));
+        assertTrue(common("email", Map.of()).test("jane.doe@example.co.tz"));
+        assertFalse(common("email", Map.of()).test("jane@@example.com"));
+        assertFalse(common("email", Map.of()).test("jane@example"));
+        assertTrue(common("phone", Map.of()).test("+255712345678"));
+        assertTrue(common("uuid", Map.of()).test("123e4567-e89b-12d3-a456-426614174000"));
+    }
+
+    @Test
+    void checkLengthReadsItsBoundsFromTheRule() {
+        ValidationCheck check = common("check_length", Map.of("min_length", "2", "max_length", 4));
+        assertTrue(check.test("ab"));
+        assertFalse(check.test("a"));
+        assertFalse(check.test("abcde"));
+        assertEquals("field must be between 2 and 4 characters", check.getFailureMessage());
+        assertThrows(IllegalArgumentException.class, () -> common("check_length", Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> common("check_length", Map.of("min_length", "x")));
+    }
+}
@@ -0,0 +1,155 @@
+package com.daraja.daraja.service;
+
+import com.daraja.daraja.utility.RequestBodyBinder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchHandlerTests {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private DatabaseService db;
+    private RequestExecutor requestExecutor;
+    private ApiHandler apiHandler;
+    private RouteRegistry routeRegistry;
+    private RequestBodyBinder requestBodyBinder;
+
+    @BeforeEach
+    void createSchema() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:batch;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        db = new DatabaseService(dataSource);
+        db.register();
+        update("DROP ALL OBJECTS");
+        update("CREATE TABLE PREAPICONFIG (path VARCHAR(100), api_code VARCHAR(10))");
+        update("CREATE TABLE APIFETCHCONFIG (api_code BIGINT, \"className\" VARCHAR(200), \"methodName\" VARCHAR(100), post_method VARCHAR(10))");
+        update("CREATE TABLE APIFETCHPARAM (api_code BIGINT, request_param VARCHAR(100), is_mandatory VARCHAR(1))");
+        update("CREATE TABLE API_CONFIG_VERSION (config_version BIGINT)");
+        update("CREATE TABLE user_software_usage (user_id VARCHAR(20), user_status VARCHAR(20), block_date DATE, number_of_requests BIGINT)");
+        update("INSERT INTO PREAPICONFIG VALUES ('echo', '10001'), ('bulk', '10002')");
+        update("INSERT INTO APIFETCHCONFIG VALUES (10001, '" + EchoBo.class.getName() + "', 'process', 'POST')");
+        update("INSERT INTO APIFETCHCONFIG VALUES (10002, '" + BulkBo.class.getName() + "', 'process', 'POST')");
+        update("INSERT INTO API_CONFIG_VERSION VALUES (1)");
+        update("INSERT INTO user_software_usage VALUES ('u1', 'active', null, 0)");
+
+        routeRegistry = new RouteRegistry(db, 0);
+        routeRegistry.start();
+        requestExecutor = new RequestExecutor("platform", 10, 20, 1, 1, 1, 1, 0);
+        requestExecutor.start();
+        requestBodyBinder = new RequestBodyBinder(1 << 20);
+        apiHandler = new ApiHandler(routeRegistry, requestBodyBinder, requestExecutor, new MicroBatcher(),
+                new ResponseCache(1 << 20), new RateLimiter(1000, 60000));
+    }
+
+    @AfterEach
+    void stop() {
+        requestExecutor.stop();
+    }
+
+    private void update(String sql) {
+        db.executeUpdate(sql, Collections.emptyList());
+    }
+
+    private JsonNode post(BatchHandler handler, String body) throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest("POST", "/api/v1/batch");
+        req.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse resp = new MockHttpServletResponse();
+        handler.service(req, resp);
+        return MAPPER.readTree(resp.getContentAsString());
+    }
+
+    private BatchHandler handler(int parallelism) {
+        return new BatchHandler(apiHandler, routeRegistry, requestBodyBinder, requestExecutor, 100, 1 << 20, parallelism);
+    }
+
+    // Results arrive in completion order; index them by the item they answer
+    private static Map<Integer, JsonNode> byIndex(JsonNode results) {
+        Map<Integer, JsonNode> byIndex = new HashMap<>();
+        results.forEach(result -> byIndex.put(result.get("index").asInt(), result));
+        return byIndex;
+    }
+
+    @Test
+    void sequentialBatchAnswersEveryItem() throws Exception {
+        JsonNode results = post(handler(4), "{\"user_id\": \"u1\", \"items\": ["
+                + "{\"path\": \"echo\", \"body\": {\"amount\": \"5\"}},"
+                + "{\"path\": \"nope\", \"body\": {}},"
+                + "{\"path\": \"/api/v1/echo\", \"body\": {\"amount\": \"boom\"}}]}");
+
+        Map<Integer, JsonNode> byIndex = byIndex(results);
+        assertEquals(3, byIndex.size());
+        assertEquals(201, byIndex.get(0).get("status").asInt());
+        assertEquals("5", byIndex.get(0).get("body").get("amount").asText());
+        assertEquals(400, byIndex.get(1).get("status").asInt());
+        assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, byIndex.get(2).get("status").asInt());
+        assertTrue(byIndex.get(2).has("error"));
+    }
+
+    @Test
+    void bulkGroupGoesToTheBulkMethod() throws Exception {
+        JsonNode results = post(handler(4), "{\"user_id\": \"u1\", \"items\": ["
+                + "{\"path\": \"bulk\", \"body\": {\"amount\": \"1\"}},"
+                + "{\"path\": \"bulk\", \"body\": {\"amount\": \"2\"}}]}");
+
+        Map<Integer, JsonNode> byIndex = byIndex(results);
+        assertEquals(2, byIndex.get(0).get("body").get("bulk").asInt());
+        assertEquals("2", byIndex.get(1).get("body").get("amount").asText());
+    }
+
+    @Test
+    void parallelBatchWithOneSlotNeverHangs() {
+        BatchHandler handler = handler(1);
+        String body = "{\"user_id\": \"u1\", \"parallel\": true, \"items\": ["
+                + "{\"path\": \"echo\", \"body\": {\"amount\": \"1\"}},"
+                + "{\"path\": \"echo\", \"body\": {\"amount\": \"2\"}},"
+                + "{\"path\": \"nope\", \"body\": {}},"
+                + "{\"path\": \"bulk\", \"body\": {\"amount\": \"3\"}},"
+                + "{\"path\": \"bulk\", \"body\": {\"amount\": \"4\"}}]}";
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            for (int i = 0; i < 500; i++) {
+                assertEquals(5, byIndex(post(handler, body)).size());
+            }
+        });
+    }
+
+    public static class EchoBo {
+        public void setAmount(String amount) {
+        }
+
+        public void setUser_id(String userId) {
+        }
+
+        public void process(Map<String, String> params, HttpServletResponse resp) throws Exception {
+            if ("boom".equals(params.get("amount"))) {
+                throw new IllegalStateException("boom");
+            }
+            resp.setStatus(201);
+            resp.getWriter().write("{\"amount\": \"" + params.get("amount") + "\"}");
+        }
+    }
+
+    public static class BulkBo extends EchoBo {
+        public void process(List<Map<String, String>> params, List<HttpServletResponse> responses) throws Exception {
+            for (int i = 0; i < params.size(); i++) {
+                responses.get(i).getWriter().write("{\"bulk\": " + params.size() + ", \"amount\": \"" + params.get(i).get("amount") + "\"}");
+            }
+        }
+    }
+}
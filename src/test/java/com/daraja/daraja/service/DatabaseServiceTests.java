@@ -0,0 +1,116 @@
+package com.daraja.daraja.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseServiceTests {
+
+    private DatabaseService db;
+
+    @BeforeEach
+    void createSchema() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:rows;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        db = new DatabaseService(dataSource);
+        db.executeUpdate("DROP ALL OBJECTS", Collections.emptyList());
+        db.executeUpdate("CREATE TABLE user_software_usage (user_id VARCHAR(20), user_status VARCHAR(20), block_date DATE, number_of_requests BIGINT DEFAULT 0)", Collections.emptyList());
+        db.executeUpdate("INSERT INTO user_software_usage (user_id, user_status, block_date) VALUES ('u1', ' active ', null), ('u2', 'active', DATE '2024-01-01')", Collections.emptyList());
+    }
+
+    @Test
+    void mapsRowsWithoutMaps() {
+        List<UserStatus> users = db.query("SELECT user_status, block_date FROM user_software_usage ORDER BY user_id",
+                Collections.emptyList(), UserStatus::fromRow);
+        assertEquals(2, users.size());
+        assertTrue(users.get(0).isActive());
+        assertTrue(users.get(1).isBlocked());
+
+        ResultRows rows = db.queryRows("SELECT user_id, block_date FROM user_software_usage ORDER BY user_id", List.of());
+        assertEquals(2, rows.size());
+        assertEquals(2, rows.getColumnCount());
+        assertEquals("u2", rows.getObject(1, "user_id"));
+        assertNull(rows.getObject(0, "block_date"));
+        assertEquals(-1, rows.indexOf("missing"));
+    }
+
+    @Test
+    void mapApiIsLayeredOnRows() {
+        List<Map<String, Object>> maps = db.executeQuery("SELECT user_id, user_status FROM user_software_usage WHERE user_id = ?",
+                List.of("u1"));
+        assertEquals(List.of(Map.of("user_id", "u1", "user_status", " active ")), maps);
+        assertTrue(db.executeQuery("SELECT * FROM no_such_table", List.of()).isEmpty());
+        assertTrue(db.queryRows("SELECT * FROM no_such_table", List.of()).isEmpty());
+    }
+
+    @Test
+    void streamsRowsThroughCursor() throws Exception {
+        List<String> ids = new ArrayList<>();
+        long count = db.forEachRow("SELECT user_id FROM user_software_usage ORDER BY user_id", List.of(), 1,
+                row -> ids.add(row.getString("user_id")));
+        assertEquals(2, count);
+        assertEquals(List.of("u1", "u2"), ids);
+
+        try (Stream<String> statuses = db.stream("SELECT user_status FROM user_software_usage WHERE user_id = ?",
+                List.of("u1"), 1, row -> row.getString("user_status"))) {
+            assertEquals(List.of("active"), statuses.collect(Collectors.toList()));
+        }
+        assertThrows(SQLException.class, () -> db.stream("SELECT * FROM no_such_table", List.of(), 1, row -> row));
+    }
+
+    @Test
+    void namedQueriesArePreparedOncePerConnection() {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:rows;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        pool.setUsername("sa");
+        pool.setMaximumPoolSize(1);
+        try (pool) {
+            DatabaseService pooled = new DatabaseService(pool);
+            for (int i = 0; i < 3; i++) {
+                List<UserStatus> users = pooled.query(NamedQuery.USER_STATUS, List.of("u1"), UserStatus::fromRow);
+                assertTrue(users.get(0).isActive());
+            }
+            assertEquals(1, pooled.executeUpdate(NamedQuery.ADD_USER_REQUESTS, List.of(2, "u2")));
+            assertEquals(1, pooled.getPrepareCount(NamedQuery.USER_STATUS));
+            assertEquals(3, pooled.getExecuteCount(NamedQuery.USER_STATUS));
+            assertEquals(1, pooled.getExecuteCount(NamedQuery.ADD_USER_REQUESTS));
+        }
+    }
+
+    @Test
+    void batchesRunInOneTransactionWithPerRowOutcomes() throws Exception {
+        db.executeUpdate("CREATE TABLE product (id INT PRIMARY KEY, name VARCHAR(20))", List.of());
+        String insert = "INSERT INTO product VALUES (?, ?)";
+
+        BatchResult inserted = db.batchUpdate(insert, List.of(List.of(1, "a"), List.of(2, "b"), List.of(3, "c")), 2);
+        assertTrue(inserted.isSuccessful());
+        assertArrayEquals(new int[]{1, 1, 1}, inserted.getUpdateCounts());
+
+        BatchResult duplicate = db.batchUpdate(insert, List.of(List.of(4, "d"), List.of(5, "e"), List.of(1, "x")), 2);
+        assertFalse(duplicate.isSuccessful());
+        assertEquals(2, duplicate.getFailedRow());
+        assertEquals(Statement.EXECUTE_FAILED, duplicate.getUpdateCount(2));
+        assertEquals(BatchResult.NOT_APPLIED, duplicate.getUpdateCount(0));
+        assertEquals(3, db.executeQuery("SELECT id FROM product", List.of()).size());
+
+        assertThrows(SQLException.class, () -> db.inTransaction(tx -> {
+            tx.executeUpdate("UPDATE product SET name = ?", List.of("z"));
+            return tx.executeUpdate("INSERT INTO product VALUES (?, ?)", List.of(1, "dup"));
+        }));
+        assertEquals(0, db.executeQuery("SELECT id FROM product WHERE name = 'z'", List.of()).size());
+        assertEquals(Integer.valueOf(3), db.inTransaction(tx -> tx.executeUpdate("UPDATE product SET name = ?", List.of("z"))));
+    }
+}
@@ -0,0 +1,58 @@
+package com.daraja.daraja.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsHandlerTests {
+
+    @Test
+    void reportsServerCounters() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:metrics;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        DatabaseService db = new DatabaseService(dataSource);
+        db.executeUpdate("DROP ALL OBJECTS", Collections.emptyList());
+        db.executeUpdate("CREATE TABLE API_CONFIG_VERSION (config_version BIGINT)", Collections.emptyList());
+        db.queryChecked(NamedQuery.CONFIG_VERSION, Collections.emptyList(), row -> row.getObject("config_version"));
+        db.queryChecked(NamedQuery.CONFIG_VERSION, Collections.emptyList(), row -> row.getObject("config_version"));
+        RequestExecutor requestExecutor = new RequestExecutor("platform", 10, 20, 1, 1, 1, 1, 0);
+        requestExecutor.start();
+        try {
+            MockHttpServletResponse resp = new MockHttpServletResponse();
+            MetricsHandler handler = new MetricsHandler(requestExecutor, db, new ResponseCache(1 << 20),
+                    new RateLimiter(1000, 60000), new UserStatusCache(30000, 100));
+            handler.service(new MockHttpServletRequest("GET", "/metrics"), resp);
+
+            assertEquals(200, resp.getStatus());
+            JsonNode metrics = new ObjectMapper().readTree(resp.getContentAsString());
+            JsonNode execution = metrics.get("execution");
+            assertEquals(requestExecutor.getMode().name(), execution.get("mode").asText());
+            assertEquals(0, execution.get("pinnedCount").asLong());
+            assertTrue(execution.get("stages").has("VALIDATE"));
+            assertTrue(execution.get("stages").get("INVOKE").has("rejected"));
+            assertTrue(metrics.get("dbPool").get("acquireCount").asLong() >= 1);
+            assertTrue(metrics.get("dbPool").has("maxWaitMillis"));
+            JsonNode configVersion = metrics.get("statements").get("CONFIG_VERSION");
+            // Unpooled here, so every call prepares on a fresh connection
+            assertEquals(2, configVersion.get("prepared").asLong());
+            assertEquals(2, configVersion.get("executed").asLong());
+            assertEquals(0, metrics.get("statements").get("FETCH_PARAM").get("executed").asLong());
+            assertEquals(0, metrics.get("responseCache").get("hits").asLong());
+            assertTrue(metrics.get("responseCache").has("coalesced"));
+            assertEquals(0, metrics.get("rateLimit").get("rejected").asLong());
+            assertEquals(0, metrics.get("rateLimit").get("keys").asLong());
+            assertEquals(0, metrics.get("userCache").get("misses").asLong());
+            assertTrue(metrics.get("userCache").has("evictions"));
+        } finally {
+            requestExecutor.stop();
+        }
+    }
+}
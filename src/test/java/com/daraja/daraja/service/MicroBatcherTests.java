@@ -0,0 +1,156 @@
+package com.daraja.daraja.service;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicroBatcherTests {
+
+    private MicroBatcher microBatcher;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void start() {
+        BulkBo.batchSizes.clear();
+        microBatcher = new MicroBatcher();
+        microBatcher.start();
+        callers = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void stop() {
+        callers.shutdownNow();
+        microBatcher.stop();
+    }
+
+    private static ApiRoute route(long windowMs, int maxSize) {
+        return new ApiRoute("bulk", "10002", Map.of("className", BulkBo.class.getName(), "methodName", "process",
+                "batch_window_ms", windowMs, "batch_max_size", maxSize), List.of());
+    }
+
+    // One caller on its own thread; the future holds the body it was answered with
+    private Future<String> call(ApiRoute route, String amount) {
+        return callers.submit(() -> {
+            MockHttpServletResponse resp = new MockHttpServletResponse();
+            microBatcher.invoke(route, Map.of("amount", amount), resp);
+            return resp.getContentAsString();
+        });
+    }
+
+    @Test
+    void supportsOnlyBatchedRoutesWithABulkMethod() {
+        assertTrue(microBatcher.supports(route(50, 4)));
+        assertFalse(microBatcher.supports(route(0, 4)));
+        assertFalse(microBatcher.supports(route(50, 1)));
+        assertFalse(microBatcher.supports(new ApiRoute("echo", "10001", Map.of("className", EchoBo.class.getName(),
+                "methodName", "process", "batch_window_ms", 50, "batch_max_size", 4), List.of())));
+    }
+
+    @Test
+    void fullWindowFlushesWithoutWaitingForTheTimer() throws Exception {
+        ApiRoute route = route(60_000, 4);
+        List<Future<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            calls.add(call(route, String.valueOf(i)));
+        }
+        for (int i = 0; i < 4; i++) {
+            assertEquals("{\"bulk\": 4, \"amount\": \"" + i + "\"}", calls.get(i).get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(List.of(4), List.copyOf(BulkBo.batchSizes));
+        assertEquals(1, microBatcher.getBulkCalls());
+        assertEquals(4, microBatcher.getBatchedRequests());
+    }
+
+    @Test
+    void timerFlushesAPartialWindow() throws Exception {
+        ApiRoute route = route(50, 100);
+        long started = System.nanoTime();
+        assertEquals("{\"bulk\": 1, \"amount\": \"7\"}", call(route, "7").get(10, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(List.of(1), List.copyOf(BulkBo.batchSizes));
+    }
+
+    @Test
+    void bulkFailureReachesEveryCaller() throws Exception {
+        ApiRoute route = route(60_000, 3);
+        List<Future<String>> calls = List.of(call(route, "1"), call(route, "boom"), call(route, "3"));
+        for (Future<String> call : calls) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> call.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+        assertEquals(0, microBatcher.getBulkCalls());
+
+        // The failed window is gone; the next call opens a fresh one
+        List<Future<String>> next = List.of(call(route, "4"), call(route, "5"), call(route, "6"));
+        assertEquals("{\"bulk\": 3, \"amount\": \"5\"}", next.get(1).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void concurrentCallersAreEachAnsweredOnce() {
+        ApiRoute route = route(5, 8);
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            List<Future<String>> calls = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                calls.add(call(route, String.valueOf(i)));
+            }
+            for (int i = 0; i < calls.size(); i++) {
+                assertTrue(calls.get(i).get().endsWith("\"amount\": \"" + i + "\"}"));
+            }
+        });
+        assertEquals(500, BulkBo.batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(BulkBo.batchSizes.stream().allMatch(size -> size >= 1 && size <= 8));
+        assertEquals(500, microBatcher.getBatchedRequests());
+        assertEquals(BulkBo.batchSizes.size(), microBatcher.getBulkCalls());
+    }
+
+    @Test
+    void stopFlushesTheOpenWindow() throws Exception {
+        Future<String> call = call(route(60_000, 100), "9");
+        // Give the caller time to join the window; it would otherwise wait a minute for the timer
+        Thread.sleep(200);
+        microBatcher.stop();
+        assertEquals("{\"bulk\": 1, \"amount\": \"9\"}", call.get(10, TimeUnit.SECONDS));
+    }
+
+    public static class EchoBo {
+        public void setAmount(String amount) {
+        }
+
+        public void process(Map<String, String> params, HttpServletResponse resp) throws Exception {
+            resp.getWriter().write("{\"amount\": \"" + params.get("amount") + "\"}");
+        }
+    }
+
+    public static class BulkBo extends EchoBo {
+        // Bulk calls get a fresh instance each time, so sizes are recorded statically
+        static final Queue<Integer> batchSizes = new ConcurrentLinkedQueue<>();
+
+        public void process(List<Map<String, String>> params, List<HttpServletResponse> responses) throws Exception {
+            for (Map<String, String> param : params) {
+                if ("boom".equals(param.get("amount"))) {
+                    throw new IllegalStateException("boom");
+                }
+            }
+            batchSizes.add(params.size());
+            for (int i = 0; i < params.size(); i++) {
+                responses.get(i).getWriter().write("{\"bulk\": " + params.size() + ", \"amount\": \"" + params.get(i).get("amount") + "\"}");
+            }
+        }
+    }
+}
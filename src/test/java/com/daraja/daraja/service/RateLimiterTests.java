@@ -0,0 +1,42 @@
+package com.daraja.daraja.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTests {
+
+    private final RateLimiter limiter = new RateLimiter(1000, 60000);
+
+    @Test
+    void allowsBurstThenRefillsAtTheConfiguredRate() {
+        // 60 a minute in bursts of 3: one call a second once the burst is spent
+        ApiRoute route = new ApiRoute("transfer", "10002",
+                Map.of("rate_limit_per_minute", 60, "rate_limit_burst", 3), List.of());
+        long now = 0;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire(route, "u1", now));
+        }
+        assertFalse(limiter.tryAcquire(route, "u1", now));
+        // Buckets are per user
+        assertTrue(limiter.tryAcquire(route, "u2", now));
+
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertTrue(limiter.tryAcquire(route, "u1", now));
+        assertFalse(limiter.tryAcquire(route, "u1", now));
+        assertEquals(2, limiter.getRejectedCount());
+    }
+
+    @Test
+    void unlimitedRoutesKeepNoState() {
+        ApiRoute route = new ApiRoute("balance", "10001", Map.of("className", "com.example.BalanceBo"), List.of());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire(route, "u1"));
+        }
+        assertEquals(0, limiter.getKeyCount());
+    }
+}
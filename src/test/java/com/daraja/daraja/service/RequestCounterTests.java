@@ -0,0 +1,93 @@
+package com.daraja.daraja.service;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCounterTests {
+
+    private DatabaseService db;
+
+    @BeforeEach
+    void createSchema() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:counter;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        db = new DatabaseService(dataSource);
+        update("DROP ALL OBJECTS");
+        createUsers();
+    }
+
+    private void createUsers() {
+        update("CREATE TABLE user_software_usage (user_id VARCHAR(20), user_status VARCHAR(20), block_date DATE, number_of_requests BIGINT)");
+        update("INSERT INTO user_software_usage VALUES ('u1', 'active', null, 0), ('u2', 'active', null, 0)");
+    }
+
+    private void update(String sql) {
+        db.executeUpdate(sql, Collections.emptyList());
+    }
+
+    private long requests(String userId) {
+        List<Long> counts = db.query("SELECT number_of_requests FROM user_software_usage WHERE user_id = ?",
+                List.of(userId), row -> row.getLong("number_of_requests", -1));
+        return counts.get(0);
+    }
+
+    @Test
+    void flushesOnceThresholdIsReached() throws Exception {
+        RequestCounter counter = new RequestCounter(db, 3_600_000, 3);
+        counter.start();
+        try {
+            counter.increment("u1");
+            counter.add("u2", 2);
+            long deadline = System.currentTimeMillis() + 5000;
+            // Users are dropped only after their counts are written; the pending total goes first
+            while (counter.getPendingUserCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, requests("u1"));
+            assertEquals(2, requests("u2"));
+            assertEquals(0, counter.getPendingCount());
+        } finally {
+            counter.stop();
+        }
+    }
+
+    @Test
+    void keepsCountsWhenTheBatchFails() {
+        RequestCounter counter = new RequestCounter(db, 3_600_000, 1000);
+        counter.start();
+        try {
+            counter.add("u1", 2);
+            update("DROP TABLE user_software_usage");
+            counter.flush();
+            assertEquals(2, counter.getPendingCount());
+            assertEquals(1, counter.getPendingUserCount());
+
+            createUsers();
+            counter.flush();
+            assertEquals(0, counter.getPendingCount());
+            assertEquals(2, requests("u1"));
+        } finally {
+            counter.stop();
+        }
+    }
+
+    @Test
+    void stopWritesWhatIsPending() {
+        RequestCounter counter = new RequestCounter(db, 3_600_000, 1000);
+        counter.start();
+        counter.increment("u1");
+        counter.stop();
+        assertEquals(1, requests("u1"));
+
+        // Requests still finishing after shutdown must not fail on the stopped flusher
+        counter.add("u1", 1000);
+        assertEquals(1000, counter.getPendingCount());
+    }
+}
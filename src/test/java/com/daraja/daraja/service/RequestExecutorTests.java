@@ -0,0 +1,48 @@
+package com.daraja.daraja.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestExecutorTests {
+
+    @Test
+    void platformModeDoesNotDispatch() {
+        RequestExecutor executor = new RequestExecutor("platform", 10, 20, 1, 1, 1, 1, 0);
+        executor.start();
+        assertEquals(RequestExecutor.Mode.PLATFORM, executor.getMode());
+        executor.stop();
+    }
+
+    @Test
+    void virtualModeRunsOnVirtualThreadsUpToMaxInFlight() throws Exception {
+        RequestExecutor executor = new RequestExecutor("virtual", 1, 20, 1, 1, 1, 1, 0);
+        executor.start();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+            AtomicBoolean virtual = new AtomicBoolean();
+            assertTrue(executor.dispatch(() -> {
+                virtual.set(Thread.currentThread().isVirtual());
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }));
+            assertEquals(1, executor.getInFlight());
+            assertFalse(executor.dispatch(() -> { }));
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(virtual.get());
+        } finally {
+            executor.stop();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.daraja.daraja.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTests {
+
+    private final ApiRoute route = new ApiRoute("balance", "10001",
+            Map.of("className", "com.example.BalanceBo", "cache_ttl_seconds", 60), List.of());
+
+    @Test
+    void cachesSuccessfulResponsesPerCanonicalParameters() throws Exception {
+        ResponseCache cache = new ResponseCache(1 << 20);
+        AtomicInteger calls = new AtomicInteger();
+        ResponseCache.Loader loader = resp -> {
+            calls.incrementAndGet();
+            resp.setStatus(200);
+            resp.getOutputStream().write("{\"balance\":1}".getBytes());
+        };
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        cache.invoke(route, Map.of("user_id", "u1", "accountId", "a"), first, loader);
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        cache.invoke(route, Map.of("accountId", "a", "user_id", "u1"), second, loader);
+        cache.invoke(route, Map.of("accountId", "a", "user_id", "u2"), new MockHttpServletResponse(), loader);
+
+        assertEquals(2, calls.get());
+        assertEquals("{\"balance\":1}", second.getContentAsString());
+        assertEquals(1, cache.getHitCount());
+
+        // Errors reach the caller but are not kept
+        ResponseCache.Loader failing = resp -> resp.sendError(500, "down");
+        cache.invoke(route, Map.of("user_id", "u3"), new MockHttpServletResponse(), failing);
+        MockHttpServletResponse retried = new MockHttpServletResponse();
+        cache.invoke(route, Map.of("user_id", "u3"), retried, loader);
+        assertEquals(200, retried.getStatus());
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void coalescesConcurrentIdenticalMisses() throws Exception {
+        ResponseCache cache = new ResponseCache(1 << 20);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ResponseCache.Loader slow = resp -> {
+            calls.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            resp.getWriter().write("ok");
+        };
+
+        List<Thread> threads = new ArrayList<>();
+        List<MockHttpServletResponse> responses = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            MockHttpServletResponse resp = new MockHttpServletResponse();
+            responses.add(resp);
+            threads.add(Thread.ofVirtual().start(() -> {
+                try {
+                    cache.invoke(route, Map.of("user_id", "u1"), resp, slow);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        while (cache.getMissCount() + cache.getCoalescedCount() + cache.getHitCount() < 4) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, calls.get());
+        for (MockHttpServletResponse resp : responses) {
+            assertEquals("ok", resp.getContentAsString());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.daraja.daraja.service;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteRegistryTests {
+
+    private DatabaseService db;
+
+    @BeforeEach
+    void createSchema() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:routes;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        db = new DatabaseService(dataSource);
+        update("DROP ALL OBJECTS");
+        update("CREATE TABLE PREAPICONFIG (path VARCHAR(100), api_code VARCHAR(10))");
+        update("CREATE TABLE APIFETCHCONFIG (api_code BIGINT, \"className\" VARCHAR(200), \"methodName\" VARCHAR(100), post_method VARCHAR(10))");
+        update("CREATE TABLE APIFETCHPARAM (api_code BIGINT, request_param VARCHAR(100), is_mandatory VARCHAR(1))");
+        update("CREATE TABLE API_CONFIG_VERSION (config_version BIGINT)");
+        update("INSERT INTO PREAPICONFIG VALUES ('balance', '10001')");
+        update("INSERT INTO APIFETCHCONFIG VALUES (10001, 'com.example.BalanceBo', 'processBalance', 'POST')");
+        update("INSERT INTO APIFETCHPARAM VALUES (10001, 'accountId', '1')");
+        update("INSERT INTO API_CONFIG_VERSION VALUES (1)");
+    }
+
+    private void update(String sql) {
+        db.executeUpdate(sql, Collections.emptyList());
+    }
+
+    @Test
+    void resolvesRoutesFromSnapshot() {
+        RouteRegistry registry = new RouteRegistry(db, 0);
+        registry.start();
+
+        ApiRoute route = registry.resolve("balance");
+        assertNotNull(route);
+        assertEquals("10001", route.getApiCode());
+        assertEquals("com.example.BalanceBo", route.getClassName());
+        assertEquals("processBalance", route.getMethodName());
+        assertTrue(route.isPost());
+        assertEquals(1, route.getRequestParams().size());
+        assertTrue(route.getRequestParams().get(0).isMandatory());
+        assertNull(registry.resolve("unknown"));
+        assertEquals(1L, registry.getSnapshotVersion());
+    }
+
+    @Test
+    void swapsSnapshotOnlyWhenVersionChanges() {
+        RouteRegistry registry = new RouteRegistry(db, 0);
+        registry.start();
+
+        update("INSERT INTO PREAPICONFIG VALUES ('payment', '10002')");
+        update("INSERT INTO APIFETCHCONFIG VALUES (10002, 'com.example.PaymentBo', 'processPayment', 'POST')");
+        assertFalse(registry.refreshIfChanged());
+        assertNull(registry.resolve("payment"));
+
+        update("UPDATE API_CONFIG_VERSION SET config_version = 2");
+        assertTrue(registry.refreshIfChanged());
+        assertEquals(2L, registry.getSnapshotVersion());
+        assertEquals("processPayment", registry.resolve("payment").getMethodName());
+        assertTrue(registry.getLastRebuildMillis() >= 0);
+    }
+
+    @Test
+    void keepsSnapshotWhenConfigTablesCannotBeRead() {
+        RouteRegistry registry = new RouteRegistry(db, 0);
+        registry.start();
+        AtomicInteger reloads = new AtomicInteger();
+        registry.addReloadListener(reloads::incrementAndGet);
+
+        // A routing table fails to read after a version bump: no swap, no listeners
+        update("UPDATE API_CONFIG_VERSION SET config_version = 2");
+        update("DROP TABLE APIFETCHPARAM");
+        assertFalse(registry.refreshIfChanged());
+        assertEquals(1L, registry.getSnapshotVersion());
+        assertNotNull(registry.resolve("balance"));
+
+        // The version itself cannot be read: not a version change either
+        update("DROP TABLE API_CONFIG_VERSION");
+        assertFalse(registry.refreshIfChanged());
+        assertNotNull(registry.resolve("balance"));
+        assertEquals(0, reloads.get());
+
+        update("CREATE TABLE APIFETCHPARAM (api_code BIGINT, request_param VARCHAR(100), is_mandatory VARCHAR(1))");
+        update("CREATE TABLE API_CONFIG_VERSION (config_version BIGINT)");
+        assertFalse(registry.refreshIfChanged());
+        update("INSERT INTO API_CONFIG_VERSION VALUES (3)");
+        assertTrue(registry.refreshIfChanged());
+        assertEquals(3L, registry.getSnapshotVersion());
+        assertEquals(1, reloads.get());
+    }
+
+    @Test
+    void loadsRoutesWithoutAVersionTable() {
+        update("DROP TABLE API_CONFIG_VERSION");
+        RouteRegistry registry = new RouteRegistry(db, 0);
+        registry.start();
+
+        assertEquals(RouteRegistry.UNKNOWN_VERSION, registry.getSnapshotVersion());
+        assertNotNull(registry.resolve("balance"));
+        assertFalse(registry.refreshIfChanged());
+    }
+
+    @Test
+    void pollLoadsRoutesWhenStartupCouldNot() {
+        update("DROP TABLE API_CONFIG_VERSION");
+        update("DROP TABLE APIFETCHPARAM");
+        RouteRegistry registry = new RouteRegistry(db, 0);
+        registry.start();
+        assertNull(registry.resolve("balance"));
+
+        update("CREATE TABLE APIFETCHPARAM (api_code BIGINT, request_param VARCHAR(100), is_mandatory VARCHAR(1))");
+        assertTrue(registry.refreshIfChanged());
+        assertNotNull(registry.resolve("balance"));
+        assertFalse(registry.refreshIfChanged());
+    }
+}
@@ -0,0 +1,67 @@
+package com.daraja.daraja.utility;
+
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferedResponseTests {
+
+    @Test
+    void resetLeavesTheWrappedResponseAlone() throws IOException {
+        MockHttpServletResponse real = new MockHttpServletResponse();
+        real.getOutputStream().write("[{\"index\":0}".getBytes(StandardCharsets.UTF_8));
+
+        BufferedResponse buffered = new BufferedResponse(real);
+        buffered.setHeader("X-Trace", "1");
+        buffered.sendError(500, "first try");
+        buffered.getWriter().write("discarded");
+        buffered.reset();
+        buffered.getOutputStream().write("kept".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(buffered.isError());
+        assertNull(buffered.getHeader("X-Trace"));
+        assertEquals("kept", new String(buffered.getBody(), StandardCharsets.UTF_8));
+        assertEquals("[{\"index\":0}", real.getContentAsString());
+    }
+
+    @Test
+    void writeListenerIsCalledRightAway() throws IOException {
+        BufferedResponse buffered = new BufferedResponse(new MockHttpServletResponse());
+        buffered.getOutputStream().setWriteListener(new WriteListener() {
+            @Override
+            public void onWritePossible() throws IOException {
+                buffered.getOutputStream().write('x');
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                fail(t);
+            }
+        });
+        assertArrayEquals(new byte[]{'x'}, buffered.getBody());
+    }
+
+    @Test
+    void bodyOverTheLimitBecomesA507() throws IOException {
+        long previous = BufferedResponse.getMaxBodyBytes();
+        BufferedResponse.setMaxBodyBytes(8);
+        try {
+            BufferedResponse buffered = new BufferedResponse(new MockHttpServletResponse());
+            buffered.getOutputStream().write("[1,2,".getBytes(StandardCharsets.UTF_8));
+            assertThrows(IOException.class, () -> buffered.getOutputStream().write("3,4,5]".getBytes(StandardCharsets.UTF_8)));
+            // What the BO does about the failure does not replace the 507
+            buffered.sendError(500, "Internal error while invoking API");
+
+            assertTrue(buffered.isError());
+            assertEquals(507, buffered.getStatus());
+            assertEquals(0, buffered.getBody().length);
+        } finally {
+            BufferedResponse.setMaxBodyBytes(previous);
+        }
+    }
+}
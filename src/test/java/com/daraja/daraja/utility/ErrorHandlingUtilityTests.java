@@ -0,0 +1,38 @@
+package com.daraja.daraja.utility;
+
+import com.daraja.daraja.service.DatabaseService;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ErrorHandlingUtilityTests {
+
+    @Test
+    void refreshTellsAnEmptyTableFromAFailedRead() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:errors;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        DatabaseService db = new DatabaseService(dataSource);
+        db.executeUpdate("DROP ALL OBJECTS", Collections.emptyList());
+        db.executeUpdate("CREATE TABLE error_messages (error_code VARCHAR(10), error_message VARCHAR(100))", Collections.emptyList());
+        db.executeUpdate("INSERT INTO error_messages VALUES ('ERR1', 'Configured message')", Collections.emptyList());
+
+        ErrorHandlingUtility errors = new ErrorHandlingUtility(db);
+        errors.refresh();
+        assertEquals("Configured message", errors.getErrorByCode("ERR1"));
+
+        // Unreadable table: the catalog stays
+        db.executeUpdate("ALTER TABLE error_messages RENAME TO error_messages_old", Collections.emptyList());
+        errors.refresh();
+        assertEquals("Configured message", errors.getErrorByCode("ERR1"));
+
+        // Messages deleted on purpose: the fallback message is served
+        db.executeUpdate("ALTER TABLE error_messages_old RENAME TO error_messages", Collections.emptyList());
+        db.executeUpdate("DELETE FROM error_messages", Collections.emptyList());
+        errors.refresh();
+        assertEquals("Request failed with error ERR1", errors.getErrorByCode("ERR1"));
+    }
+}
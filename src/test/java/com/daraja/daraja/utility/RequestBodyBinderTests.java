@@ -0,0 +1,96 @@
+package com.daraja.daraja.utility;
+
+import com.daraja.daraja.service.ApiRoute;
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestBodyBinderTests {
+
+    private static final int LIMIT = 128;
+
+    private final RequestBodyBinder binder = new RequestBodyBinder(LIMIT);
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ApiRoute route(String... params) {
+        List<ApiRoute.RequestParam> requestParams = new ArrayList<>();
+        for (String param : params) {
+            requestParams.add(new ApiRoute.RequestParam(param, false));
+        }
+        return new ApiRoute("echo", "10001", Map.of("className", "x.Bo", "methodName", "process"), requestParams);
+    }
+
+    @Test
+    void keepsOnlyBoundParameters() throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest("POST", "/api/v1/echo");
+        req.setContent("{\"amount\": 5, \"user_id\": \"u1\", \"extra\": {\"deep\": [1, 2]}, \"other\": \"x\"}"
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Map.of("amount", "5", "user_id", "u1"), binder.bind(req, route("amount")));
+    }
+
+    @Test
+    void keepsEveryFieldWhenNoneAreDeclared() throws Exception {
+        Map<String, String> params = binder.bind(body("{\"a\": \"x\", \"b\": true, \"c\": 1.5}"), null);
+
+        assertEquals(Map.of("a", "x", "b", "true", "c", "1.5"), params);
+    }
+
+    @Test
+    void bindsStructuresAsJsonAndNullAsNull() throws Exception {
+        Map<String, String> params = binder.bind(body("{\"o\": {\"k\": [1, \"v\"]}, \"a\": [], \"n\": null}"),
+                Set.of("o", "a", "n"));
+
+        assertEquals("{\"k\":[1,\"v\"]}", params.get("o"));
+        assertEquals("[]", params.get("a"));
+        assertTrue(params.containsKey("n"));
+        assertNull(params.get("n"));
+    }
+
+    @Test
+    void emptyBodyBindsNothing() throws Exception {
+        assertTrue(binder.bind(body(""), null).isEmpty());
+    }
+
+    @Test
+    void rejectsBodiesThatAreNotObjects() {
+        assertThrows(JsonParseException.class, () -> binder.bind(body("[1, 2]"), null));
+        assertThrows(JsonParseException.class, () -> binder.bind(body("\"text\""), null));
+        assertThrows(JsonParseException.class, () -> binder.bind(body("{\"a\": "), null));
+    }
+
+    @Test
+    void rejectsBodiesOverTheLimit() {
+        // Declared length over the limit fails before the body is read
+        MockHttpServletRequest req = new MockHttpServletRequest("POST", "/api/v1/echo");
+        req.setContent(("{\"amount\": \"" + "9".repeat(LIMIT) + "\"}").getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> binder.bind(req, route("amount")));
+
+        // No length declared (chunked): the stream itself stops at the limit, even in skipped fields
+        IOException e = assertThrows(IOException.class,
+                () -> binder.bind(body("{\"skipped\": \"" + "9".repeat(LIMIT) + "\"}"), Set.of("amount")));
+        assertTrue(e.getMessage().contains(LIMIT + " bytes"));
+    }
+
+    @Test
+    void acceptsABodyOfExactlyTheLimit() throws Exception {
+        String json = "{\"a\": \"" + "9".repeat(LIMIT - 9) + "\"}";
+        assertEquals(LIMIT, json.length());
+
+        assertEquals(LIMIT - 9, binder.bind(body(json), null).get("a").length());
+    }
+}
@@ -0,0 +1,62 @@
+package com.daraja.daraja.utility;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link SqlInjectionScreener} with the regex screen it replaced. Run {@link #main}
+ * after {@code mvn test-compile}.
+ *
+ * <p>The old pattern string does not compile ({@code ;--} inside the character class is an
+ * invalid range), so the baseline uses the closest valid pattern, compiled per call as the
+ * old code did.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlInjectionScreenerBenchmark {
+
+    private static final String LEGACY_PATTERN =
+            ".*(['\";<>]|--|\\b(SELECT|INSERT|UPDATE|DELETE|DROP|CREATE|ALTER|EXEC|UNION|WHERE|OR|AND|BETWEEN|LIKE|HAVING|JOIN)\\b).*";
+
+    @Param({"short", "multiKb"})
+    public String size;
+
+    private String input;
+
+    @Setup
+    public void setUp() {
+        if (size.equals("short")) {
+            input = "USR-000123";
+        } else {
+            // Clean multi-KB value: the worst case, as the whole input has to be scanned
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() < 8192) {
+                sb.append("sensor reading ").append(sb.length()).append(" lat 6.7924 lon 39.2083 ");
+            }
+            input = sb.toString();
+        }
+    }
+
+    @Benchmark
+    public boolean legacyRegex() {
+        return Pattern.compile(LEGACY_PATTERN, Pattern.CASE_INSENSITIVE).matcher(input).matches();
+    }
+
+    @Benchmark
+    public boolean screener() {
+        return SqlInjectionScreener.containsSqlInjection(input);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SqlInjectionScreenerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,38 @@
+package com.daraja.daraja.utility;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlInjectionScreenerTests {
+
+    @Test
+    void flagsMetacharactersAndComments() {
+        assertTrue(SqlInjectionScreener.containsSqlInjection("abc'"));
+        assertTrue(SqlInjectionScreener.containsSqlInjection("\"x"));
+        assertTrue(SqlInjectionScreener.containsSqlInjection("1;2"));
+        assertTrue(SqlInjectionScreener.containsSqlInjection("<script>"));
+        assertTrue(SqlInjectionScreener.containsSqlInjection("admin--"));
+        assertTrue(SqlInjectionScreener.containsSqlInjection("a/*b*/"));
+    }
+
+    @Test
+    void flagsKeywordsOnlyAsWholeWords() {
+        assertTrue(SqlInjectionScreener.containsSqlInjection("1 or 1"));
+        assertTrue(SqlInjectionScreener.containsSqlInjection("x UNION select y"));
+        assertTrue(SqlInjectionScreener.containsSqlInjection("Drop"));
+        assertTrue(SqlInjectionScreener.containsSqlInjection("line one\nthen delete"));
+        assertFalse(SqlInjectionScreener.containsSqlInjection("ORDERS"));
+        assertFalse(SqlInjectionScreener.containsSqlInjection("selection"));
+        assertFalse(SqlInjectionScreener.containsSqlInjection("brand_and"));
+    }
+
+    @Test
+    void passesOrdinaryValues() {
+        assertFalse(SqlInjectionScreener.containsSqlInjection(null));
+        assertFalse(SqlInjectionScreener.containsSqlInjection(""));
+        assertFalse(SqlInjectionScreener.containsSqlInjection("USR-000123"));
+        assertFalse(SqlInjectionScreener.containsSqlInjection("balance/check"));
+        assertFalse(SqlInjectionScreener.containsSqlInjection("john.doe@example.com"));
+    }
+}